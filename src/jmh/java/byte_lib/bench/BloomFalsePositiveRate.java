@@ -0,0 +1,46 @@
+package byte_lib.bench;
+
+import byte_lib.hashed.ByteStringFilter;
+import byte_lib.hashed.ByteStringFilter.BloomMode;
+import byte_lib.string.ByteString;
+
+import static byte_lib.string.ByteString.bs;
+
+/**
+ * Prints false-positive rates of the Bloom filter modes at several
+ * bits per key and numbers of hashes, the counterpart of the lookup timings in
+ * {@link ByteStringFilterBenchmark}.
+ */
+public class BloomFalsePositiveRate {
+    public static void main(String[] args) {
+        int sz2degree = 24;
+        int probes = 1_000_000;
+        System.out.println("mode\tbitsPerKey\tnHashes\tfpRate");
+        for (int bitsPerKey : new int[]{8, 10, 12, 16}) {
+            for (int nHashes : new int[]{4, 7, 8, 11}) {
+                for (BloomMode mode : BloomMode.values()) {
+                    double fpRate = falsePositiveRate(mode, sz2degree, bitsPerKey, nHashes, probes);
+                    System.out.printf("%s\t%d\t%d\t%.6f%n", mode, bitsPerKey, nHashes, fpRate);
+                }
+            }
+        }
+    }
+
+    private static double falsePositiveRate(BloomMode mode, int sz2degree, int bitsPerKey,
+                                            int nHashes, int probes) {
+        int keys = (1 << sz2degree) / bitsPerKey;
+        ByteStringFilter filter = ByteStringFilter.bloom(sz2degree, nHashes, mode);
+        for (int i = 0; i < keys; i++) {
+            filter.add(key(i));
+        }
+        int falsePositives = 0;
+        for (int i = keys; i < keys + probes; i++) {
+            if (filter.contains(key(i))) falsePositives++;
+        }
+        return (double) falsePositives / probes;
+    }
+
+    private static ByteString key(int i) {
+        return bs("<http://dbpedia.org/resource/R" + i + ">");
+    }
+}
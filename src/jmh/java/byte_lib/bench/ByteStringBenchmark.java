@@ -0,0 +1,98 @@
+package byte_lib.bench;
+
+import byte_lib.string.ByteString;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+import static byte_lib.string.ByteString.NEW_LINE;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ByteStringBenchmark {
+    @Param({"WRAPPED", "BIG"})
+    Data.Buf buf;
+
+    @Param({"200000"})
+    int lines;
+
+    ByteString content;
+    ByteString[] items;
+    ByteString[] copies;
+
+    @Setup
+    public void setUp() {
+        byte[] data = Data.triples(lines, lines / 4, 1);
+        content = Data.string(data, buf);
+        items = content.split(NEW_LINE);
+        copies = Data.string(data.clone(), buf).split(NEW_LINE);
+    }
+
+    @Benchmark
+    public ByteString[] split() {
+        return content.split(NEW_LINE);
+    }
+
+    @Benchmark
+    public void iterateIdx(Blackhole bh) {
+        content.iterateIdx(NEW_LINE, (s, e) -> {
+            bh.consume(e);
+            return true;
+        });
+    }
+
+    @Benchmark
+    public int howMuch() {
+        return content.howMuch(NEW_LINE);
+    }
+
+    /**
+     * Scanned bytes per second, reported as scanThroughput:bytes;
+     * divide by 1e9 for GB/s.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Scanned {
+        public long bytes;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public int scanThroughput(Scanned scanned) {
+        scanned.bytes += content.length();
+        return content.howMuch(NEW_LINE);
+    }
+
+    @Benchmark
+    public int hashCodes() {
+        int h = 0;
+        for (ByteString item : items) {
+            h += item.hashCode();
+        }
+        return h;
+    }
+
+    @Benchmark
+    public int equalsCopies() {
+        int n = 0;
+        for (int i = 0; i < items.length; i++) {
+            if (items[i].equals(copies[i])) n++;
+        }
+        return n;
+    }
+
+    @Benchmark
+    public int compareToNext() {
+        int r = 0;
+        for (int i = 1; i < items.length; i++) {
+            r += items[i - 1].compareTo(items[i]);
+        }
+        return r;
+    }
+}
@@ -0,0 +1,98 @@
+package byte_lib.bench;
+
+import byte_lib.hashed.ByteStringFilter;
+import byte_lib.string.ByteString;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+import static byte_lib.hashed.ByteStringFilter.BloomMode.BLOCKED;
+import static byte_lib.string.ByteString.NEW_LINE;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ByteStringFilterBenchmark {
+    @Param({"WRAPPED", "BIG"})
+    Data.Buf buf;
+
+    @Param({"bloom", "blockedBloom", "concurrentBloom", "cuckoo", "mem"})
+    String filterType;
+
+    @Param({"24", "30"})
+    int sz2degree;
+
+    @Param({"SIMPLE", "XX"})
+    Data.Hash hash;
+
+    @Param({"7", "8"})
+    int nHashes;
+
+    @Param({"200000"})
+    int lines;
+
+    ByteString[] keys;
+    ByteString[] absent;
+    ByteStringFilter filter;
+
+    @Setup
+    public void setUp() {
+        keys = subjects(Data.triples(lines, lines / 4, 1));
+        absent = subjects(Data.triples(lines, lines / 4, 2));
+        filter = add();
+    }
+
+    private ByteString[] subjects(byte[] data) {
+        ByteString[] items = Data.string(data, buf).split(NEW_LINE);
+        ByteString[] subjects = new ByteString[items.length];
+        for (int i = 0; i < items.length; i++) {
+            subjects[i] = items[i].firstField();
+        }
+        return subjects;
+    }
+
+    private ByteStringFilter newFilter() {
+        switch (filterType) {
+            case "bloom":
+                return ByteStringFilter.bloom(sz2degree, nHashes, hash.hasher());
+            case "blockedBloom":
+                return ByteStringFilter.bloom(sz2degree, nHashes, BLOCKED, hash.hasher());
+            case "concurrentBloom":
+                return ByteStringFilter.concurrentBloom(sz2degree, nHashes, hash.hasher());
+            case "cuckoo":
+                return ByteStringFilter.cuckoo(lines, 13, hash.hasher());
+            default:
+                return ByteStringFilter.mem(lines, hash.hasher());
+        }
+    }
+
+    @Benchmark
+    public ByteStringFilter add() {
+        ByteStringFilter filter = newFilter();
+        for (ByteString key : keys) {
+            filter.add(key);
+        }
+        return filter;
+    }
+
+    @Benchmark
+    public int containsPresent() {
+        int n = 0;
+        for (ByteString key : keys) {
+            if (filter.contains(key)) n++;
+        }
+        return n;
+    }
+
+    @Benchmark
+    public int containsAbsent() {
+        int n = 0;
+        for (ByteString key : absent) {
+            if (filter.contains(key)) n++;
+        }
+        return n;
+    }
+}
@@ -0,0 +1,110 @@
+package byte_lib.bench;
+
+import byte_lib.hashed.ArenaByteStringMap;
+import byte_lib.hashed.ByteStringLongMap;
+import byte_lib.hashed.ByteStringMap;
+import byte_lib.string.ByteString;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+import static byte_lib.string.ByteString.NEW_LINE;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ByteStringMapBenchmark {
+    @Param({"WRAPPED", "BIG"})
+    Data.Buf buf;
+
+    @Param({"SIMPLE", "XX"})
+    Data.Hash hash;
+
+    @Param({"200000"})
+    int lines;
+
+    ByteString[] keys;
+    ByteStringMap<ByteString> map;
+    ArenaByteStringMap<ByteString> arenaMap;
+
+    @Setup
+    public void setUp() {
+        ByteString content = Data.string(Data.triples(lines, lines / 4, 1), buf);
+        ByteString[] items = content.split(NEW_LINE);
+        keys = new ByteString[items.length];
+        for (int i = 0; i < items.length; i++) {
+            keys[i] = items[i].firstField();
+        }
+        map = put();
+        arenaMap = newArenaMap();
+    }
+
+    @TearDown
+    public void tearDown() {
+        arenaMap.close();
+    }
+
+    private ArenaByteStringMap<ByteString> newArenaMap() {
+        ArenaByteStringMap<ByteString> map = new ArenaByteStringMap<>(10, hash.hasher(), 1 << 20);
+        for (ByteString key : keys) {
+            map.put(key, key);
+        }
+        return map;
+    }
+
+    @Benchmark
+    public ByteStringMap<ByteString> put() {
+        ByteStringMap<ByteString> map = new ByteStringMap<>(10, hash.hasher());
+        for (ByteString key : keys) {
+            map.put(key, key);
+        }
+        return map;
+    }
+
+    @Benchmark
+    public int get() {
+        int n = 0;
+        for (ByteString key : keys) {
+            if (map.get(key) != null) n++;
+        }
+        return n;
+    }
+
+    @Benchmark
+    public ByteStringMap<Long> countBoxed() {
+        ByteStringMap<Long> map = new ByteStringMap<>(10, hash.hasher());
+        for (ByteString key : keys) {
+            Long count = map.get(key);
+            map.put(key, count == null ? 1 : count + 1);
+        }
+        return map;
+    }
+
+    @Benchmark
+    public ByteStringLongMap countLong() {
+        ByteStringLongMap map = new ByteStringLongMap(10, hash.hasher());
+        for (ByteString key : keys) {
+            map.increment(key);
+        }
+        return map;
+    }
+
+    @Benchmark
+    public int putArena() {
+        try (ArenaByteStringMap<ByteString> map = newArenaMap()) {
+            return map.size();
+        }
+    }
+
+    @Benchmark
+    public int getArena() {
+        int n = 0;
+        for (ByteString key : keys) {
+            if (arenaMap.get(key) != null) n++;
+        }
+        return n;
+    }
+}
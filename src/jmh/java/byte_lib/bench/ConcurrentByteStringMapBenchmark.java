@@ -0,0 +1,53 @@
+package byte_lib.bench;
+
+import byte_lib.hashed.ByteStringMap;
+import byte_lib.hashed.ConcurrentByteStringMap;
+import byte_lib.string.ByteString;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static byte_lib.string.ByteString.NEW_LINE;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@Threads(4)
+public class ConcurrentByteStringMapBenchmark {
+    @Param({"concurrent", "synchronized"})
+    String mapType;
+
+    @Param({"200000"})
+    int lines;
+
+    ByteString[] keys;
+    Map<ByteString, ByteString> map;
+
+    @Setup
+    public void setUp() {
+        ByteString content = Data.string(Data.triples(lines, lines / 4, 1), Data.Buf.WRAPPED);
+        ByteString[] items = content.split(NEW_LINE);
+        keys = new ByteString[items.length];
+        for (int i = 0; i < items.length; i++) {
+            keys[i] = items[i].firstField();
+        }
+        map = mapType.equals("concurrent")
+                ? new ConcurrentByteStringMap<>()
+                : Collections.synchronizedMap(new ByteStringMap<>());
+    }
+
+    @Benchmark
+    public int putGet() {
+        int n = 0;
+        for (ByteString key : keys) {
+            map.put(key, key);
+            if (map.get(key) != null) n++;
+        }
+        return n;
+    }
+}
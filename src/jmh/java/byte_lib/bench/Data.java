@@ -0,0 +1,86 @@
+package byte_lib.bench;
+
+import byte_lib.buf.BigByteBuf;
+import byte_lib.buf.ByteBuf;
+import byte_lib.hashed.ByteStringHash;
+import byte_lib.string.ByteString;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+
+import static byte_lib.string.ByteString.ba;
+import static byte_lib.string.ByteString.bb;
+
+public class Data {
+    private static final String[] LANGS = {"en", "de", "fr", "uk", "es", "it", "pl", "ru"};
+    private static final String[] PREDICATES = {
+            "http://www.w3.org/2000/01/rdf-schema#label",
+            "http://www.w3.org/1999/02/22-rdf-syntax-ns#type",
+            "http://dbpedia.org/ontology/abstract",
+            "http://dbpedia.org/ontology/wikiPageWikiLink",
+            "http://www.w3.org/2002/07/owl#sameAs",
+            "http://xmlns.com/foaf/0.1/name"
+    };
+
+    public enum Buf {
+        WRAPPED,
+        BIG
+    }
+
+    public enum Hash {
+        SIMPLE,
+        XX;
+
+        public ByteStringHash hasher() {
+            return this == SIMPLE ? ByteStringHash.simple() : ByteStringHash.xx();
+        }
+    }
+
+    public static ByteString string(byte[] data, Buf buf) {
+        if (buf == Buf.WRAPPED) {
+            return ba(data);
+        }
+        ByteBuf big = new BigByteBuf(data.length);
+        big.put(data, 0, data.length).flip();
+        return bb(big);
+    }
+
+    public static byte[] triples(int nLines, int nSubjects, long seed) {
+        Random rnd = new Random(seed);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(nLines * 120);
+        StringBuilder line = new StringBuilder(256);
+        for (int i = 0; i < nLines; i++) {
+            line.setLength(0);
+            line.append('<').append(resource(rnd.nextInt(nSubjects), rnd)).append("> ");
+            line.append('<').append(PREDICATES[rnd.nextInt(PREDICATES.length)]).append("> ");
+            if (rnd.nextBoolean()) {
+                line.append('<').append(resource(rnd.nextInt(nSubjects), rnd)).append('>');
+            } else {
+                line.append('"');
+                int words = 1 + rnd.nextInt(12);
+                for (int j = 0; j < words; j++) {
+                    if (j > 0) line.append(' ');
+                    word(line, rnd);
+                }
+                line.append("\"@").append(LANGS[rnd.nextInt(LANGS.length)]);
+            }
+            line.append(" .\n");
+            byte[] bytes = line.toString().getBytes();
+            out.write(bytes, 0, bytes.length);
+        }
+        return out.toByteArray();
+    }
+
+    private static String resource(int id, Random rnd) {
+        String lang = LANGS[id % LANGS.length];
+        String host = lang.equals("en") ? "dbpedia.org" : lang + ".dbpedia.org";
+        return "http://" + host + "/resource/Resource_" + Integer.toString(id, 36);
+    }
+
+    private static void word(StringBuilder out, Random rnd) {
+        int len = 2 + rnd.nextInt(9);
+        for (int i = 0; i < len; i++) {
+            out.append((char) ('a' + rnd.nextInt(26)));
+        }
+    }
+}
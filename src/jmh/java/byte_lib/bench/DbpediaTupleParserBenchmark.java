@@ -0,0 +1,40 @@
+package byte_lib.bench;
+
+import byte_lib.string.ByteString;
+import dbpedia.DbpediaTupleParser;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+import static byte_lib.string.ByteString.NEW_LINE;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DbpediaTupleParserBenchmark {
+    @Param({"WRAPPED", "BIG"})
+    Data.Buf buf;
+
+    @Param({"200000"})
+    int lines;
+
+    ByteString[] items;
+    DbpediaTupleParser parser;
+
+    @Setup
+    public void setUp() {
+        items = Data.string(Data.triples(lines, lines / 4, 1), buf).split(NEW_LINE);
+        parser = new DbpediaTupleParser();
+    }
+
+    @Benchmark
+    public void parse(Blackhole bh) {
+        for (ByteString item : items) {
+            bh.consume(parser.parse(item));
+        }
+    }
+}
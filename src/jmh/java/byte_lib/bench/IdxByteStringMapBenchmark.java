@@ -0,0 +1,63 @@
+package byte_lib.bench;
+
+import byte_lib.hashed.IdxByteStringMap;
+import byte_lib.hashed.IdxMapper;
+import byte_lib.string.ByteString;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+import static byte_lib.string.ByteString.NEW_LINE;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class IdxByteStringMapBenchmark {
+    @Param({"WRAPPED", "BIG"})
+    Data.Buf buf;
+
+    @Param({"SIMPLE", "XX"})
+    Data.Hash hash;
+
+    @Param({"200000"})
+    int lines;
+
+    @Param({"1", "4"})
+    int parallelism;
+
+    ByteString content;
+    ByteString[] keys;
+    IdxByteStringMap map;
+
+    @Setup
+    public void setUp() {
+        content = Data.string(Data.triples(lines, lines / 4, 1), buf);
+        ByteString[] items = content.split(NEW_LINE);
+        keys = new ByteString[items.length];
+        for (int i = 0; i < items.length; i++) {
+            keys[i] = items[i].firstField();
+        }
+        map = build();
+    }
+
+    @Benchmark
+    public IdxByteStringMap build() {
+        return new IdxByteStringMap(content, NEW_LINE,
+                IdxMapper::firstField,
+                IdxMapper::thirdField,
+                hash.hasher(),
+                parallelism);
+    }
+
+    @Benchmark
+    public int get() {
+        int n = 0;
+        for (ByteString key : keys) {
+            if (map.get(key) != null) n++;
+        }
+        return n;
+    }
+}
@@ -0,0 +1,57 @@
+package byte_lib.bench;
+
+import byte_lib.ordered.LongTimSort;
+import byte_lib.ordered.PrefixRadixSort;
+import byte_lib.string.ByteString;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+import static byte_lib.string.ByteString.NEW_LINE;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LongTimSortBenchmark {
+    @Param({"WRAPPED", "BIG"})
+    Data.Buf buf;
+
+    @Param({"200000"})
+    int lines;
+
+    ByteString content;
+    long[] idx;
+    long[] items;
+
+    @Setup
+    public void setUp() {
+        content = Data.string(Data.triples(lines, lines / 4, 1), buf);
+        idx = content.splitIdx(NEW_LINE);
+    }
+
+    @Setup(Level.Invocation)
+    public void copy() {
+        items = idx.clone();
+    }
+
+    @Benchmark
+    public long[] sort() {
+        LongTimSort.sort(items, content::compareByIdx);
+        return items;
+    }
+
+    @Benchmark
+    public long[] parallelSort() {
+        LongTimSort.parallelSort(items, content::compareByIdx);
+        return items;
+    }
+
+    @Benchmark
+    public long[] prefixRadixSort() {
+        PrefixRadixSort.sort(content, items);
+        return items;
+    }
+}
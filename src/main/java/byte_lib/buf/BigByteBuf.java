@@ -7,6 +7,7 @@ import sun.misc.*;
 import java.lang.reflect.Field;
 import java.nio.BufferOverflowException;
 import java.nio.BufferUnderflowException;
+import java.nio.ByteOrder;
 
 import static java.lang.String.format;
 
@@ -18,6 +19,7 @@ public class BigByteBuf implements ByteBuf {
     static Unsafe unsafe = getUnsafe();
 
     private static final long arrayBaseOffset = (long)unsafe.arrayBaseOffset(byte[].class);
+    private static final boolean NATIVE_BIG_ENDIAN = ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN;
 
     private final Cleaner cleaner;
     private final long size;
@@ -207,6 +209,22 @@ public class BigByteBuf implements ByteBuf {
         return unsafe.getByte(base + checkIndex(idx));
     }
 
+    @Override
+    public long getLong(long idx) {
+        checkIndex(idx);
+        checkIndex(idx + 7);
+        long v = unsafe.getLong(base + idx);
+        return NATIVE_BIG_ENDIAN ? v : Long.reverseBytes(v);
+    }
+
+    @Override
+    public int getInt(long idx) {
+        checkIndex(idx);
+        checkIndex(idx + 3);
+        int v = unsafe.getInt(base + idx);
+        return NATIVE_BIG_ENDIAN ? v : Integer.reverseBytes(v);
+    }
+
     @Override
     public ByteBuf put(long idx, byte b) {
         unsafe.putByte(base + checkIndex(idx), b);
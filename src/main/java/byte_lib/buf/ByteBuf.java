@@ -31,6 +31,22 @@ public interface ByteBuf {
 
     byte get(long idx);
 
+    default long getLong(long idx) {
+        long r = 0;
+        for (int i = 0; i < 8; i++) {
+            r = (r << 8) | (get(idx + i) & 0xFF);
+        }
+        return r;
+    }
+
+    default int getInt(long idx) {
+        int r = 0;
+        for (int i = 0; i < 4; i++) {
+            r = (r << 8) | (get(idx + i) & 0xFF);
+        }
+        return r;
+    }
+
     ByteBuf duplicate();
 
     ByteBuf flip();
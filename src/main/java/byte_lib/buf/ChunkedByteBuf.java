@@ -0,0 +1,229 @@
+package byte_lib.buf;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+public class ChunkedByteBuf implements ByteBuf {
+    public static final int MIN_CHUNK_BITS = 16;
+    public static final int MAX_CHUNK_BITS = 30;
+    public static final long BIG_CHUNK_SIZE = 16L * 1024 * 1024;
+
+    private final int chunkBits;
+    private final long chunkMask;
+    private ByteBuf[] chunks;
+    private int nChunks;
+    private long capacity;
+    private long position;
+    private long limit;
+    private final Object attached;
+
+    public ChunkedByteBuf(long sizeHint) {
+        int bits = nBits(sizeHint);
+        if (bits < MIN_CHUNK_BITS) bits = MIN_CHUNK_BITS;
+        if (bits > MAX_CHUNK_BITS) bits = MAX_CHUNK_BITS;
+        chunkBits = bits;
+        chunkMask = (1L << bits) - 1;
+        chunks = new ByteBuf[4];
+        grow(sizeHint);
+        attached = null;
+    }
+
+    ChunkedByteBuf(ChunkedByteBuf buf) {
+        attached = buf;
+        chunkBits = buf.chunkBits;
+        chunkMask = buf.chunkMask;
+        chunks = buf.chunks;
+        nChunks = buf.nChunks;
+        capacity = buf.capacity;
+        position = buf.position;
+        limit = buf.limit;
+    }
+
+    private void grow(long need) {
+        boolean unlimited = limit == capacity;
+        while (capacity < need || nChunks == 0) {
+            if (nChunks == chunks.length) {
+                chunks = Arrays.copyOf(chunks, chunks.length * 2);
+            }
+            chunks[nChunks++] = allocateChunk(1L << chunkBits);
+            capacity += 1L << chunkBits;
+        }
+        if (unlimited) {
+            limit = capacity;
+        }
+    }
+
+    private static ByteBuf allocateChunk(long size) {
+        return size < BIG_CHUNK_SIZE
+                ? ByteBuf.wrap(ByteBuffer.allocateDirect((int) size))
+                : new BigByteBuf(size);
+    }
+
+    public long capacity() {
+        return capacity;
+    }
+
+    @Override
+    public long limit() {
+        return limit;
+    }
+
+    @Override
+    public long position() {
+        return position;
+    }
+
+    @Override
+    public ByteBuf position(long p) {
+        position = p;
+        return this;
+    }
+
+    @Override
+    public ByteBuf limit(long l) {
+        limit = l;
+        return this;
+    }
+
+    @Override
+    public ByteBuf put(byte[] src, int offset, int length) {
+        ensureWritable(length);
+        while (length > 0) {
+            ByteBuf chunk = chunks[chunk(position)].duplicate();
+            long chunkOff = position & chunkMask;
+            int n = (int) Math.min(length, chunkMask + 1 - chunkOff);
+            chunk.position(chunkOff);
+            chunk.put(src, offset, n);
+            offset += n;
+            length -= n;
+            position += n;
+        }
+        return this;
+    }
+
+    @Override
+    public ByteBuf put(ByteBuf src) {
+        if (src == this) {
+            throw new IllegalArgumentException();
+        }
+        long n = src.limit() - src.position();
+        ensureWritable(n);
+        byte[] buf = new byte[(int) Math.min(BigByteBuf.COPY_SIZE, n)];
+        while (n > 0) {
+            int sz = (int) Math.min(buf.length, n);
+            src.get(buf, 0, sz);
+            put(buf, 0, sz);
+            n -= sz;
+        }
+        return this;
+    }
+
+    private void ensureWritable(long length) {
+        long need = position + length;
+        if (need <= limit) {
+            return;
+        }
+        if (limit != capacity) {
+            throw new BufferOverflowException();
+        }
+        grow(need);
+    }
+
+    @Override
+    public ByteBuf put(long idx, byte b) {
+        checkIndex(idx);
+        chunks[chunk(idx)].put(idx & chunkMask, b);
+        return this;
+    }
+
+    @Override
+    public ByteBuf get(byte[] dst, int offset, int length) {
+        if (length > limit - position) {
+            throw new BufferUnderflowException();
+        }
+        while (length > 0) {
+            ByteBuf chunk = chunks[chunk(position)].duplicate();
+            long chunkOff = position & chunkMask;
+            int n = (int) Math.min(length, chunkMask + 1 - chunkOff);
+            chunk.position(chunkOff);
+            chunk.get(dst, offset, n);
+            offset += n;
+            length -= n;
+            position += n;
+        }
+        return this;
+    }
+
+    @Override
+    public byte get(long idx) {
+        checkIndex(idx);
+        return chunks[chunk(idx)].get(idx & chunkMask);
+    }
+
+    @Override
+    public long getLong(long idx) {
+        checkIndex(idx);
+        checkIndex(idx + 7);
+        long chunkOff = idx & chunkMask;
+        if (chunkOff + 8 <= chunkMask + 1) {
+            return chunks[chunk(idx)].getLong(chunkOff);
+        }
+        return ByteBuf.super.getLong(idx);
+    }
+
+    @Override
+    public int getInt(long idx) {
+        checkIndex(idx);
+        checkIndex(idx + 3);
+        long chunkOff = idx & chunkMask;
+        if (chunkOff + 4 <= chunkMask + 1) {
+            return chunks[chunk(idx)].getInt(chunkOff);
+        }
+        return ByteBuf.super.getInt(idx);
+    }
+
+    @Override
+    public ByteBuf duplicate() {
+        return new ChunkedByteBuf(this);
+    }
+
+    @Override
+    public ByteBuf flip() {
+        limit = position;
+        position = 0;
+        return this;
+    }
+
+    @Override
+    public void free() {
+        if (attached != null) {
+            return;
+        }
+        for (int i = 0; i < nChunks; i++) {
+            chunks[i].free();
+            chunks[i] = null;
+        }
+        nChunks = 0;
+    }
+
+    private int chunk(long idx) {
+        return (int) (idx >>> chunkBits);
+    }
+
+    private void checkIndex(long idx) {
+        if (idx < 0 || idx >= limit) {
+            throw new IndexOutOfBoundsException();
+        }
+    }
+
+    private static int nBits(long capacity) {
+        int bits = 0;
+        while (capacity > 0) {
+            bits++;
+            capacity >>= 1;
+        }
+        return bits;
+    }
+}
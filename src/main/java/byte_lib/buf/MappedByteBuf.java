@@ -0,0 +1,232 @@
+package byte_lib.buf;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sun.misc.Cleaner;
+import sun.nio.ch.DirectBuffer;
+
+import java.io.File;
+import java.io.IOError;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+public class MappedByteBuf implements ByteBuf {
+    private static final Logger LOG = LoggerFactory.getLogger(MappedByteBuf.class);
+
+    public static final int SEGMENT_BITS = 30;
+    public static final long SEGMENT_SIZE = 1L << SEGMENT_BITS;
+    public static final long SEGMENT_MASK = SEGMENT_SIZE - 1;
+    public static final int COPY_SIZE = 64 * 1024;
+
+    private final MappedByteBuffer[] segments;
+    private final long size;
+    private long position;
+    private long limit;
+    private final Object attached;
+
+    public MappedByteBuf(FileChannel channel, MapMode mode, long size) throws IOException {
+        int nSegments = (int) ((size + SEGMENT_MASK) >>> SEGMENT_BITS);
+        segments = new MappedByteBuffer[nSegments];
+        for (int i = 0; i < nSegments; i++) {
+            long off = (long) i << SEGMENT_BITS;
+            segments[i] = channel.map(mode, off, Math.min(SEGMENT_SIZE, size - off));
+        }
+        LOG.info("Mapped {} bytes in {} segments", size, nSegments);
+        this.size = size;
+        this.limit = size;
+        attached = null;
+    }
+
+    MappedByteBuf(MappedByteBuf buf) {
+        attached = buf;
+        segments = buf.segments;
+        position = buf.position;
+        limit = buf.limit;
+        size = buf.size;
+    }
+
+    public static MappedByteBuf map(File file) {
+        return map(file, MapMode.READ_ONLY, file.length());
+    }
+
+    public static MappedByteBuf map(File file, MapMode mode, long size) {
+        String fileMode = mode == MapMode.READ_ONLY ? "r" : "rw";
+        try (RandomAccessFile raf = new RandomAccessFile(file, fileMode);
+             FileChannel channel = raf.getChannel()) {
+            return new MappedByteBuf(channel, mode, size);
+        } catch (IOException ex) {
+            throw new IOError(ex);
+        }
+    }
+
+    @Override
+    public long limit() {
+        return limit;
+    }
+
+    @Override
+    public long position() {
+        return position;
+    }
+
+    @Override
+    public ByteBuf position(long p) {
+        position = p;
+        return this;
+    }
+
+    @Override
+    public ByteBuf limit(long l) {
+        limit = l;
+        return this;
+    }
+
+    @Override
+    public ByteBuf put(byte[] src, int offset, int length) {
+        checkBounds(offset, length, src.length);
+        if (length > limit - position) {
+            throw new BufferOverflowException();
+        }
+        while (length > 0) {
+            MappedByteBuffer segment = segments[segment(position)];
+            int segOff = (int) (position & SEGMENT_MASK);
+            int n = Math.min(length, segment.limit() - segOff);
+            MappedByteBuffer dup = (MappedByteBuffer) segment.duplicate();
+            dup.position(segOff);
+            dup.put(src, offset, n);
+            offset += n;
+            length -= n;
+            position += n;
+        }
+        return this;
+    }
+
+    @Override
+    public ByteBuf put(ByteBuf src) {
+        if (src == this) {
+            throw new IllegalArgumentException();
+        }
+        long n = src.limit() - src.position();
+        if (n > limit - position) {
+            throw new BufferOverflowException();
+        }
+        byte[] buf = new byte[(int) Math.min(COPY_SIZE, n)];
+        while (n > 0) {
+            int sz = (int) Math.min(buf.length, n);
+            src.get(buf, 0, sz);
+            put(buf, 0, sz);
+            n -= sz;
+        }
+        return this;
+    }
+
+    @Override
+    public ByteBuf put(long idx, byte b) {
+        checkIndex(idx);
+        segments[segment(idx)].put((int) (idx & SEGMENT_MASK), b);
+        return this;
+    }
+
+    @Override
+    public ByteBuf get(byte[] dst, int offset, int length) {
+        checkBounds(offset, length, dst.length);
+        if (length > limit - position) {
+            throw new BufferUnderflowException();
+        }
+        while (length > 0) {
+            MappedByteBuffer segment = segments[segment(position)];
+            int segOff = (int) (position & SEGMENT_MASK);
+            int n = Math.min(length, segment.limit() - segOff);
+            MappedByteBuffer dup = (MappedByteBuffer) segment.duplicate();
+            dup.position(segOff);
+            dup.get(dst, offset, n);
+            offset += n;
+            length -= n;
+            position += n;
+        }
+        return this;
+    }
+
+    @Override
+    public byte get(long idx) {
+        checkIndex(idx);
+        return segments[segment(idx)].get((int) (idx & SEGMENT_MASK));
+    }
+
+    @Override
+    public long getLong(long idx) {
+        checkIndex(idx);
+        checkIndex(idx + 7);
+        int segOff = (int) (idx & SEGMENT_MASK);
+        MappedByteBuffer segment = segments[segment(idx)];
+        if (segOff + 8 <= segment.limit()) {
+            return segment.getLong(segOff);
+        }
+        return ByteBuf.super.getLong(idx);
+    }
+
+    @Override
+    public int getInt(long idx) {
+        checkIndex(idx);
+        checkIndex(idx + 3);
+        int segOff = (int) (idx & SEGMENT_MASK);
+        MappedByteBuffer segment = segments[segment(idx)];
+        if (segOff + 4 <= segment.limit()) {
+            return segment.getInt(segOff);
+        }
+        return ByteBuf.super.getInt(idx);
+    }
+
+    @Override
+    public ByteBuf duplicate() {
+        return new MappedByteBuf(this);
+    }
+
+    @Override
+    public ByteBuf flip() {
+        limit = position;
+        position = 0;
+        return this;
+    }
+
+    public void force() {
+        for (MappedByteBuffer segment : segments) {
+            segment.force();
+        }
+    }
+
+    @Override
+    public void free() {
+        if (attached != null) {
+            return;
+        }
+        for (int i = 0; i < segments.length; i++) {
+            Cleaner cleaner = ((DirectBuffer) segments[i]).cleaner();
+            if (cleaner != null) {
+                cleaner.clean();
+            }
+            segments[i] = null;
+        }
+        LOG.info("Unmapped {}", size);
+    }
+
+    private static int segment(long idx) {
+        return (int) (idx >>> SEGMENT_BITS);
+    }
+
+    private void checkIndex(long idx) {
+        if (idx < 0 || idx >= limit) {
+            throw new IndexOutOfBoundsException();
+        }
+    }
+
+    private static void checkBounds(int off, int len, int size) {
+        if ((off | len | (off + len) | (size - (off + len))) < 0)
+            throw new IndexOutOfBoundsException();
+    }
+}
@@ -24,6 +24,18 @@ public class WrappedByteBuf implements ByteBuf {
         return buffer.get((int) index);
     }
 
+    @Override
+    public long getLong(long idx) {
+        long v = buffer.getLong((int) idx);
+        return buffer.order() == ByteOrder.BIG_ENDIAN ? v : Long.reverseBytes(v);
+    }
+
+    @Override
+    public int getInt(long idx) {
+        int v = buffer.getInt((int) idx);
+        return buffer.order() == ByteOrder.BIG_ENDIAN ? v : Integer.reverseBytes(v);
+    }
+
     public ByteBuf put(long idx, byte b) {
         buffer.put((int) idx, b);
         return this;
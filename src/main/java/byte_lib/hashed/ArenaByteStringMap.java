@@ -0,0 +1,264 @@
+package byte_lib.hashed;
+
+import byte_lib.buf.BigByteBuf;
+import byte_lib.string.ByteString;
+import byte_lib.string.ByteStringView;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+import static byte_lib.string.ByteString.bb;
+
+/**
+ * Map whose keys are copied into an append-only off-heap arena of
+ * {@link BigByteBuf} chunks. The table holds two longs per slot, the arena
+ * offset and the key length with the low 32 bits of its hash, so a key
+ * costs no heap objects. Keys handed to {@link #forEach} are flyweight
+ * views, valid only during the call.
+ * Removed keys stay in the arena until {@link #clear}.
+ */
+public class ArenaByteStringMap<T> implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(ArenaByteStringMap.class);
+
+    public static final long DEFAULT_CHUNK_SIZE = 64L * 1024 * 1024;
+    public static final long MAX_CHUNK_SIZE = 1L << 30;
+    private static final int MAX_BITS = 29;
+
+    private final ByteStringHash hasher;
+    private final int chunkBits;
+    private final long chunkSize;
+    private final List<BigByteBuf> chunks = new ArrayList<>();
+    private final List<ByteString> chunkViews = new ArrayList<>();
+    private long arenaPosition;
+
+    private long[] table;
+    private Object[] values;
+    private int mask;
+    private int bucketsFilled;
+    private int bucketsRemoved;
+
+    public ArenaByteStringMap() {
+        this(10);
+    }
+
+    public ArenaByteStringMap(int capacity) {
+        this(capacity, ByteStringHash.simple());
+    }
+
+    public ArenaByteStringMap(int capacity, ByteStringHash hasher) {
+        this(capacity, hasher, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param chunkSize arena chunk size, rounded up to a power of two;
+     *                  also the longest key the map accepts
+     */
+    public ArenaByteStringMap(int capacity, ByteStringHash hasher, long chunkSize) {
+        if (capacity <= 0) throw new IllegalArgumentException("capacity");
+        if (hasher == null) throw new IllegalArgumentException("hasher");
+        if (chunkSize <= 0 || chunkSize > MAX_CHUNK_SIZE) throw new IllegalArgumentException("chunkSize");
+        this.hasher = hasher;
+        chunkBits = Util.nBits(chunkSize - 1);
+        this.chunkSize = 1L << chunkBits;
+        allocateCapacity(capacity);
+    }
+
+    private void allocateCapacity(int capacity) {
+        int bits = Math.max(3, Util.nBits(capacity * 2L));
+        if (bits > MAX_BITS) throw new IllegalStateException("table is full");
+        table = new long[2 << bits];
+        values = new Object[1 << bits];
+        mask = (1 << bits) - 1;
+        LOG.debug("Rehash {} {} {}", bucketsFilled, bucketsRemoved, values.length);
+        bucketsFilled = 0;
+        bucketsRemoved = 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public T get(ByteString key) {
+        int item = find(key, hash(key));
+        return item < 0 ? null : (T) values[item];
+    }
+
+    public boolean containsKey(ByteString key) {
+        return get(key) != null;
+    }
+
+    /**
+     * A null value removes the key, like in {@link ByteStringMap}.
+     */
+    @SuppressWarnings("unchecked")
+    public T put(ByteString key, T value) {
+        long hash = hash(key);
+        int item = find(key, hash);
+        if (item >= 0) {
+            T oldValue = (T) values[item];
+            if (value == null ^ oldValue == null) {
+                if (value == null) {
+                    bucketsRemoved++;
+                } else {
+                    bucketsRemoved--;
+                }
+            }
+            values[item] = value;
+            return oldValue;
+        }
+        if (value == null) {
+            return null;
+        }
+        if (bucketsRemoved << 2 > bucketsFilled || bucketsFilled << 1 > values.length) {
+            rehash();
+        }
+        item = place(append(key), key.length(), hash);
+        values[item] = value;
+        bucketsFilled++;
+        return null;
+    }
+
+    public T remove(ByteString key) {
+        return put(key, null);
+    }
+
+    /**
+     * Calls action with a flyweight key that is moved to the next entry
+     * after the call returns; copyOf() it to keep it.
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<ByteString, T> action) {
+        ByteStringView[] flyweights = new ByteStringView[chunks.size()];
+        for (int i = 0; i < flyweights.length; i++) {
+            flyweights[i] = new ByteStringView(chunks.get(i));
+        }
+        for (int item = 0; item < values.length; item++) {
+            T value = (T) values[item];
+            if (value == null) {
+                continue;
+            }
+            long offset = table[item << 1] - 1;
+            long pos = offset & (chunkSize - 1);
+            ByteStringView key = flyweights[(int) (offset >>> chunkBits)];
+            action.accept(key.moveTo(pos, pos + (table[(item << 1) + 1] >>> 32)), value);
+        }
+    }
+
+    public int size() {
+        return bucketsFilled - bucketsRemoved;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Bytes of the arena taken by keys, removed ones included.
+     */
+    public long arenaSize() {
+        return arenaPosition;
+    }
+
+    public void clear() {
+        freeChunks();
+        allocateCapacity(10);
+    }
+
+    @Override
+    public void close() {
+        freeChunks();
+        table = new long[2];
+        values = new Object[1];
+        mask = 0;
+        bucketsFilled = 0;
+        bucketsRemoved = 0;
+    }
+
+    private void freeChunks() {
+        for (BigByteBuf chunk : chunks) {
+            chunk.free();
+        }
+        chunks.clear();
+        chunkViews.clear();
+        arenaPosition = 0;
+    }
+
+    private long hash(ByteString str) {
+        return hasher.hashCode(str, 0, str.length());
+    }
+
+    private int find(ByteString key, long hash) {
+        long len = key.length();
+        int item = (int) hash & mask;
+        for (int n = 1; n <= mask + 1; n++) {
+            long offset = table[item << 1];
+            if (offset == 0) {
+                return -1;
+            }
+            long meta = table[(item << 1) + 1];
+            if ((int) meta == (int) hash && meta >>> 32 == len && keyEquals(offset - 1, key, len)) {
+                return item;
+            }
+            item = (item + n) & mask;
+        }
+        return -1;
+    }
+
+    private boolean keyEquals(long offset, ByteString key, long len) {
+        ByteString chunk = chunkViews.get((int) (offset >>> chunkBits));
+        return chunk.regionMatches(offset & (chunkSize - 1), key, 0, len);
+    }
+
+    /**
+     * Copies the key to the arena, returns its offset.
+     */
+    private long append(ByteString key) {
+        long len = key.length();
+        if (len > chunkSize) throw new IllegalArgumentException("key");
+        int chunkIdx = (int) (arenaPosition >>> chunkBits);
+        long pos = arenaPosition & (chunkSize - 1);
+        if (pos + len > chunkSize) {
+            chunkIdx++;
+            pos = 0;
+            arenaPosition = (long) chunkIdx << chunkBits;
+        }
+        if (chunkIdx == chunks.size()) {
+            BigByteBuf chunk = new BigByteBuf(chunkSize);
+            chunks.add(chunk);
+            chunkViews.add(bb(chunk.duplicate()));
+        }
+        BigByteBuf chunk = chunks.get(chunkIdx);
+        chunk.position(pos);
+        key.writeTo(chunk);
+        long offset = arenaPosition;
+        arenaPosition += len;
+        return offset;
+    }
+
+    private int place(long offset, long len, long hash) {
+        int item = (int) hash & mask;
+        for (int n = 1; table[item << 1] != 0; n++) {
+            item = (item + n) & mask;
+        }
+        table[item << 1] = offset + 1;
+        table[(item << 1) + 1] = len << 32 | (hash & 0xFFFFFFFFL);
+        return item;
+    }
+
+    private void rehash() {
+        long[] oldTable = table;
+        Object[] oldValues = values;
+
+        allocateCapacity(Math.max(1, size()));
+
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] == null) {
+                continue;
+            }
+            long meta = oldTable[(i << 1) + 1];
+            int item = place(oldTable[i << 1] - 1, meta >>> 32, meta);
+            values[item] = oldValues[i];
+            bucketsFilled++;
+        }
+    }
+}
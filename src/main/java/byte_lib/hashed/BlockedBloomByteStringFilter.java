@@ -0,0 +1,97 @@
+package byte_lib.hashed;
+
+import byte_lib.string.ByteString;
+
+import java.util.Arrays;
+
+/**
+ * Split block Bloom filter: the high hash bits pick one 64-byte block
+ * (8 longs) and the low 32 bits, multiplied by a fixed odd salt per
+ * probe, pick one bit in each long of it. A lookup reads one block,
+ * a single cache line up to array alignment, and the probes are
+ * independent word operations. Fewer than 8 hashes are rounded up to 8,
+ * so that every long of the block gets a bit; more wrap around the block.
+ * It needs a slightly larger filter than the classic one for the same
+ * false-positive rate.
+ */
+class BlockedBloomByteStringFilter implements ByteStringFilter {
+    public static final int BLOCK_LONGS_BITS = 3;
+    public static final int BLOCK_BITS = BLOCK_LONGS_BITS + BloomByteStringFilter.LONG_BITS_SIZE;
+    public static final int MAX_SIZE_DEGREE = 36;
+    public static final int MAX_HASHES = 16;
+
+    private static final int[] SALT = {
+            0x47b6137b, 0x44974d91, 0x8824ad5b, 0xa2b7289d,
+            0x705495c7, 0x2df1424b, 0x9efc4947, 0x5c6bfb31,
+            0x9e3779b1, 0x85ebca77, 0xc2b2ae3d, 0x27d4eb2f,
+            0x165667b1, 0xd3a2646d, 0xfd7046c5, 0xb55a4f09
+    };
+
+    private final long[] data;
+    private final int nHashes;
+    private final int blockShift;
+    private final ByteStringHash hasher;
+    private boolean empty;
+
+    BlockedBloomByteStringFilter(int sz2degree, int nHashes) {
+        this(sz2degree, nHashes, ByteStringHash.xx());
+    }
+
+    BlockedBloomByteStringFilter(int sz2degree, int nHashes, ByteStringHash hasher) {
+        if (sz2degree > MAX_SIZE_DEGREE) throw new IllegalArgumentException("sz2degree");
+        if (nHashes <= 0 || nHashes > MAX_HASHES) throw new IllegalArgumentException("nHashes");
+        if (hasher == null) throw new IllegalArgumentException("hasher");
+        if (sz2degree < BLOCK_BITS) sz2degree = BLOCK_BITS;
+        this.nHashes = Math.max(nHashes, 1 << BLOCK_LONGS_BITS);
+        this.hasher = hasher;
+        data = new long[1 << (sz2degree - BloomByteStringFilter.LONG_BITS_SIZE)];
+        blockShift = 64 - (sz2degree - BLOCK_BITS);
+        empty = true;
+    }
+
+    private int block(long hash) {
+        return blockShift == 64 ? 0 : (int) (hash >>> blockShift) << BLOCK_LONGS_BITS;
+    }
+
+    @Override
+    public boolean contains(ByteString str, ByteString... other) {
+        long hash = hasher.hashCode(str, other);
+        int block = block(hash);
+        int key = (int) hash;
+        for (int i = 0; i < nHashes; i++) {
+            long msk = 1L << ((key * SALT[i]) >>> 26);
+            if ((data[block + (i & 7)] & msk) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean add(ByteString str, ByteString... other) {
+        long hash = hasher.hashCode(str, other);
+        int block = block(hash);
+        int key = (int) hash;
+        boolean added = false;
+        for (int i = 0; i < nHashes; i++) {
+            long msk = 1L << ((key * SALT[i]) >>> 26);
+            int idx = block + (i & 7);
+            long val = data[idx];
+            added |= (val & msk) == 0;
+            data[idx] = val | msk;
+        }
+        empty = false;
+        return added;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return empty;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(data, 0);
+        empty = true;
+    }
+}
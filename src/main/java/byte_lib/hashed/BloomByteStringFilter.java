@@ -14,20 +14,31 @@ class BloomByteStringFilter implements ByteStringFilter {
     private boolean empty;
 
     BloomByteStringFilter(int sz2degree, int nHashes) {
+        this(sz2degree, nHashes, ByteStringHash.xx());
+    }
+
+    BloomByteStringFilter(int sz2degree, int nHashes, ByteStringHash hasher) {
+        if (hasher == null) throw new IllegalArgumentException("hasher");
         this.nHashes = nHashes;
         if (sz2degree < LONG_BITS_SIZE) sz2degree = LONG_BITS_SIZE;
         int nLongs = 1 << (sz2degree - LONG_BITS_SIZE);
         data = new long[nLongs];
         mask = (1 << sz2degree) - 1;
-        hasher = ByteStringHash.simple();
+        this.hasher = hasher;
         empty = true;
     }
 
+    /**
+     * Bit positions are h1 + i * h2 (Kirsch-Mitzenmacher) with both
+     * halves taken from one 64-bit hash; h2 is odd to visit distinct bits.
+     */
     @Override
     public boolean contains(ByteString str, ByteString... other) {
+        long h1 = hasher.hashCode(str, other);
+        long h2 = (h1 >>> 32) | 1;
         boolean ret = true;
         for (int i = 0; i < nHashes; i++) {
-            int hash = (int) (hasher.n(i).hashCode(str, other) & mask);
+            int hash = (int) ((h1 + i * h2) & mask);
             ret &= getBit(hash >> LONG_BITS_SIZE, hash & LONG_BITS_SIZE_MASK);
         }
         return ret;
@@ -35,9 +46,11 @@ class BloomByteStringFilter implements ByteStringFilter {
 
     @Override
     public boolean add(ByteString str, ByteString... other) {
+        long h1 = hasher.hashCode(str, other);
+        long h2 = (h1 >>> 32) | 1;
         boolean ret = true;
         for (int i = 0; i < nHashes; i++) {
-            int hash = (int) (hasher.n(i).hashCode(str, other) & mask);
+            int hash = (int) ((h1 + i * h2) & mask);
             ret &= setBit(hash >> LONG_BITS_SIZE, hash & LONG_BITS_SIZE_MASK);
         }
         return !ret;
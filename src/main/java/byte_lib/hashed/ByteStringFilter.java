@@ -3,10 +3,25 @@ package byte_lib.hashed;
 import byte_lib.string.ByteString;
 
 public interface ByteStringFilter {
+    enum BloomMode {
+        CLASSIC,
+        /**
+         * All bits of a key fall into one cache line.
+         */
+        BLOCKED
+    }
+
     boolean contains(ByteString str, ByteString... other);
 
     boolean add(ByteString str, ByteString... other);
 
+    /**
+     * Only supported by filters that can forget an element, see {@link #cuckoo}.
+     */
+    default boolean remove(ByteString str, ByteString... other) {
+        throw new UnsupportedOperationException("remove");
+    }
+
     boolean isEmpty();
 
     void clear();
@@ -15,6 +30,10 @@ public interface ByteStringFilter {
         return new MemTableByteStringFilter(capacity);
     }
 
+    static ByteStringFilter mem(int capacity, ByteStringHash hasher) {
+        return new MemTableByteStringFilter(capacity, hasher);
+    }
+
     static ByteStringFilter mem() {
         return new MemTableByteStringFilter();
     }
@@ -22,4 +41,38 @@ public interface ByteStringFilter {
     static ByteStringFilter bloom(int sz2degree, int nHashes) {
         return new BloomByteStringFilter(sz2degree, nHashes);
     }
+
+    static ByteStringFilter bloom(int sz2degree, int nHashes, ByteStringHash hasher) {
+        return new BloomByteStringFilter(sz2degree, nHashes, hasher);
+    }
+
+    static ByteStringFilter bloom(int sz2degree, int nHashes, BloomMode mode) {
+        return bloom(sz2degree, nHashes, mode, ByteStringHash.xx());
+    }
+
+    static ByteStringFilter bloom(int sz2degree, int nHashes, BloomMode mode, ByteStringHash hasher) {
+        return mode == BloomMode.BLOCKED
+                ? new BlockedBloomByteStringFilter(sz2degree, nHashes, hasher)
+                : new BloomByteStringFilter(sz2degree, nHashes, hasher);
+    }
+
+    static ByteStringFilter concurrentBloom(int sz2degree, int nHashes) {
+        return new ConcurrentBloomByteStringFilter(sz2degree, nHashes);
+    }
+
+    static ByteStringFilter concurrentBloom(int sz2degree, int nHashes, ByteStringHash hasher) {
+        return new ConcurrentBloomByteStringFilter(sz2degree, nHashes, hasher);
+    }
+
+    static ByteStringFilter cuckoo(int capacity) {
+        return new CuckooByteStringFilter(capacity);
+    }
+
+    static ByteStringFilter cuckoo(int capacity, int fingerprintBits) {
+        return new CuckooByteStringFilter(capacity, fingerprintBits, ByteStringHash.xx());
+    }
+
+    static ByteStringFilter cuckoo(int capacity, int fingerprintBits, ByteStringHash hasher) {
+        return new CuckooByteStringFilter(capacity, fingerprintBits, hasher);
+    }
 }
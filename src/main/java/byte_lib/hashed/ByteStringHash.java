@@ -7,6 +7,14 @@ public interface ByteStringHash {
         return new SimpleByteStringHash();
     }
 
+    static ByteStringHash xx() {
+        return new XxByteStringHash(0);
+    }
+
+    static ByteStringHash xx(long seed) {
+        return new XxByteStringHash(seed);
+    }
+
     ByteStringHash n(int hashFunction);
 
     long hashCode(ByteString str, ByteString... other);
@@ -24,7 +32,7 @@ public interface ByteStringHash {
 
         @Override
         public long hashCode(ByteString str, ByteString... other) {
-            long hash = hashString(1L, str);
+            long hash = multiplier == 31 ? str.longHashCode() : hashString(1L, str);
             for (ByteString s : other) {
                 hash = hashString(hash, s);
             }
@@ -33,6 +41,9 @@ public interface ByteStringHash {
 
         @Override
         public long hashCode(ByteString bs, long off, long len) {
+            if (off == 0 && len == bs.length()) {
+                return bs.longHashCode();
+            }
             long result = 1;
             result = 31 * result + len;
             for (int i = 0; i < len; i++) {
@@ -49,4 +60,104 @@ public interface ByteStringHash {
             return hash;
         }
     }
+
+    /**
+     * xxHash64 reading 8 bytes per step. Values are the same as
+     * the reference implementation for a single string.
+     */
+    class XxByteStringHash implements ByteStringHash {
+        private static final long P1 = 0x9E3779B185EBCA87L;
+        private static final long P2 = 0xC2B2AE3D27D4EB4FL;
+        private static final long P3 = 0x165667B19E3779F9L;
+        private static final long P4 = 0x85EBCA77C2B2AE63L;
+        private static final long P5 = 0x27D4EB2F165667C5L;
+
+        private final long seed;
+
+        XxByteStringHash(long seed) {
+            this.seed = seed;
+        }
+
+        @Override
+        public ByteStringHash n(int hashFunction) {
+            return new XxByteStringHash(seed + hashFunction);
+        }
+
+        @Override
+        public long hashCode(ByteString str, ByteString... other) {
+            long hash = hash(seed, str, 0, str.length());
+            for (ByteString s : other) {
+                hash = hash(hash, s, 0, s.length());
+            }
+            return hash;
+        }
+
+        @Override
+        public long hashCode(ByteString bs, long off, long len) {
+            return hash(seed, bs, off, len);
+        }
+
+        private static long hash(long seed, ByteString bs, long off, long len) {
+            long end = off + len;
+            long h;
+            if (len >= 32) {
+                long v1 = seed + P1 + P2;
+                long v2 = seed + P2;
+                long v3 = seed;
+                long v4 = seed - P1;
+                for (long limit = end - 32; off <= limit; off += 32) {
+                    v1 = round(v1, readLong(bs, off));
+                    v2 = round(v2, readLong(bs, off + 8));
+                    v3 = round(v3, readLong(bs, off + 16));
+                    v4 = round(v4, readLong(bs, off + 24));
+                }
+                h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7)
+                        + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+                h = merge(h, v1);
+                h = merge(h, v2);
+                h = merge(h, v3);
+                h = merge(h, v4);
+            } else {
+                h = seed + P5;
+            }
+
+            h += len;
+
+            for (; off + 8 <= end; off += 8) {
+                h ^= round(0, readLong(bs, off));
+                h = Long.rotateLeft(h, 27) * P1 + P4;
+            }
+            if (off + 4 <= end) {
+                h ^= (Integer.reverseBytes(bs.intAt(off)) & 0xFFFFFFFFL) * P1;
+                h = Long.rotateLeft(h, 23) * P2 + P3;
+                off += 4;
+            }
+            for (; off < end; off++) {
+                h ^= (bs.byteAt(off) & 0xFF) * P5;
+                h = Long.rotateLeft(h, 11) * P1;
+            }
+
+            h ^= h >>> 33;
+            h *= P2;
+            h ^= h >>> 29;
+            h *= P3;
+            h ^= h >>> 32;
+            return h;
+        }
+
+        private static long readLong(ByteString bs, long off) {
+            return Long.reverseBytes(bs.longAt(off));
+        }
+
+        private static long round(long acc, long input) {
+            acc += input * P2;
+            acc = Long.rotateLeft(acc, 31);
+            return acc * P1;
+        }
+
+        private static long merge(long acc, long v) {
+            acc ^= round(0, v);
+            return acc * P1 + P4;
+        }
+    }
 }
@@ -0,0 +1,194 @@
+package byte_lib.hashed;
+
+import byte_lib.string.ByteString;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.function.ObjIntConsumer;
+
+import static byte_lib.string.ByteString.ba;
+
+/**
+ * Map from ByteString to int kept in parallel key, hash and value arrays,
+ * with no entry objects and no boxing. Only the low 32 bits of the hash
+ * are cached. Unlike {@link ByteStringMap} the table is filled up to half,
+ * with triangular probing that visits every slot; removed keys leave
+ * a marker until the next rehash.
+ */
+public class ByteStringIntMap {
+    private static final Logger LOG = LoggerFactory.getLogger(ByteStringIntMap.class);
+    private static final ByteString REMOVED = ba(new byte[0]);
+
+    private final ByteStringHash hasher;
+    private ByteString[] keys;
+    private int[] hashes;
+    private int[] values;
+    private int mask;
+    private int bucketsFilled;
+    private int bucketsRemoved;
+
+    public ByteStringIntMap() {
+        this(10);
+    }
+
+    public ByteStringIntMap(int capacity) {
+        this(capacity, ByteStringHash.simple());
+    }
+
+    public ByteStringIntMap(int capacity, ByteStringHash hasher) {
+        if (capacity <= 0) throw new IllegalArgumentException("capacity");
+        if (hasher == null) throw new IllegalArgumentException("hasher");
+        this.hasher = hasher;
+        allocateCapacity(capacity);
+    }
+
+    private void allocateCapacity(int capacity) {
+        int bits = Math.max(3, Util.nBits(capacity * 2L));
+        keys = new ByteString[1 << bits];
+        hashes = new int[1 << bits];
+        values = new int[1 << bits];
+        mask = (1 << bits) - 1;
+        LOG.debug("Rehash {} {} {}", bucketsFilled, bucketsRemoved, keys.length);
+        bucketsFilled = 0;
+        bucketsRemoved = 0;
+    }
+
+    public int getOrDefault(ByteString key, int defaultValue) {
+        int item = find(key, hash(key));
+        return item < 0 ? defaultValue : values[item];
+    }
+
+    public boolean containsKey(ByteString key) {
+        return find(key, hash(key)) >= 0;
+    }
+
+    /**
+     * Returns the previous value, or 0 when the key was absent.
+     */
+    public int put(ByteString key, int value) {
+        int item = slot(key);
+        int oldValue = values[item];
+        values[item] = value;
+        return oldValue;
+    }
+
+    /**
+     * Returns the present value, or 0 after storing value for an absent key.
+     */
+    public int putIfAbsent(ByteString key, int value) {
+        long hash = hash(key);
+        int item = find(key, hash);
+        if (item >= 0) {
+            return values[item];
+        }
+        values[insert(key, hash)] = value;
+        return 0;
+    }
+
+    /**
+     * Adds increment to the value of the key, absent keys count as 0.
+     * Returns the new value.
+     */
+    public int addTo(ByteString key, int increment) {
+        int item = slot(key);
+        return values[item] += increment;
+    }
+
+    public int increment(ByteString key) {
+        return addTo(key, 1);
+    }
+
+    public boolean remove(ByteString key) {
+        int item = find(key, hash(key));
+        if (item < 0) {
+            return false;
+        }
+        keys[item] = REMOVED;
+        values[item] = 0;
+        bucketsRemoved++;
+        return true;
+    }
+
+    public void forEach(ObjIntConsumer<ByteString> action) {
+        for (int i = 0; i < keys.length; i++) {
+            ByteString key = keys[i];
+            if (key != null && key != REMOVED) {
+                action.accept(key, values[i]);
+            }
+        }
+    }
+
+    public int size() {
+        return bucketsFilled - bucketsRemoved;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public void clear() {
+        allocateCapacity(10);
+    }
+
+    private long hash(ByteString str) {
+        return hasher.hashCode(str, 0, str.length());
+    }
+
+    /**
+     * Slot of the key, inserted with value 0 if absent.
+     */
+    private int slot(ByteString key) {
+        long hash = hash(key);
+        int item = find(key, hash);
+        return item >= 0 ? item : insert(key, hash);
+    }
+
+    private int find(ByteString key, long hash) {
+        int item = (int) hash & mask;
+        for (int n = 1; n <= mask + 1; n++) {
+            ByteString entryKey = keys[item];
+            if (entryKey == null) {
+                return -1;
+            }
+            if (hashes[item] == (int) hash && entryKey != REMOVED && entryKey.equals(key)) {
+                return item;
+            }
+            item = (item + n) & mask;
+        }
+        return -1;
+    }
+
+    private int insert(ByteString key, long hash) {
+        if (bucketsRemoved << 2 > bucketsFilled || bucketsFilled << 1 > keys.length) {
+            rehash();
+        }
+        bucketsFilled++;
+        return place(key, hash);
+    }
+
+    private int place(ByteString key, long hash) {
+        int item = (int) hash & mask;
+        for (int n = 1; keys[item] != null; n++) {
+            item = (item + n) & mask;
+        }
+        keys[item] = key;
+        hashes[item] = (int) hash;
+        return item;
+    }
+
+    private void rehash() {
+        ByteString[] oldKeys = keys;
+        int[] oldHashes = hashes;
+        int[] oldValues = values;
+
+        allocateCapacity(Math.max(1, size()));
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            ByteString key = oldKeys[i];
+            if (key != null && key != REMOVED) {
+                values[place(key, oldHashes[i])] = oldValues[i];
+                bucketsFilled++;
+            }
+        }
+    }
+}
@@ -10,115 +10,177 @@ import java.util.stream.Stream;
 
 import static java.util.stream.Collectors.joining;
 
+/**
+ * Robin Hood hash map: linear probing where an inserted key takes the slot
+ * of any key sitting closer to its home slot, so probe lengths stay short
+ * and even. Lookups stop at the longest probe length in the table, and
+ * removal shifts the following keys back instead of leaving tombstones.
+ * When a probe would exceed {@link #MAX_PROBE_LENGTH} the table grows.
+ */
 public class ByteStringMap<T> implements Map<ByteString, T> {
     private static final Logger LOG = LoggerFactory.getLogger(ByteStringMap.class);
 
+    public static final int MAX_PROBE_LENGTH = 64;
+    private static final int MAX_BITS = 30;
+
+    private final ByteStringHash hasher;
     private HashEntry<T> []table;
-    private int bucketsFilled;
-    private int bucketsRemoved;
-    private int bits;
+    private int size;
+    private int mask;
+    private int maxProbe;
 
     public ByteStringMap() {
         this(10);
     }
 
     public ByteStringMap(int capacity) {
+        this(capacity, ByteStringHash.simple());
+    }
+
+    public ByteStringMap(int capacity, ByteStringHash hasher) {
         if (capacity <= 0) throw new IllegalArgumentException("capacity");
+        if (hasher == null) throw new IllegalArgumentException("hasher");
+        this.hasher = hasher;
         allocateCapacity(capacity);
     }
 
+    @SuppressWarnings("unchecked")
     private void allocateCapacity(int capacity) {
-        capacity *= 4;
-        bits = Util.nBits(capacity);
-        if (bits < 3) bits = 3;
+        int bits = Math.min(MAX_BITS, Math.max(3, Util.nBits(capacity * 4L / 3)));
+        LOG.debug("Rehash {} {}", size, 1 << bits);
         table = new HashEntry[1 << bits];
-        LOG.debug("Rehash {} {} {}", bucketsFilled, bucketsRemoved, table.length);
-        bucketsFilled = 0;
-        bucketsRemoved = 0;
+        mask = (1 << bits) - 1;
+        size = 0;
+        maxProbe = 0;
     }
 
     @Override
     public T get(Object key) {
-        for (int n = 0; n < table.length; n++) {
-            int item = openAddressItem((ByteString) key, n);
+        ByteString str = (ByteString) key;
+        int item = find(str, hash(str));
+        return item < 0 ? null : table[item].value;
+    }
 
-            HashEntry entry = table[item];
-            if (entry == null) {
-                return null;
+    private int find(ByteString key, long hash) {
+        int item = (int) hash & mask;
+        for (int probe = 0; probe <= maxProbe; probe++) {
+            HashEntry<T> entry = table[item];
+            if (entry == null || probe(entry, item) < probe) {
+                return -1;
             }
-            if (entry.getKey().equals(key)) {
-                return (T) entry.value;
+            if (entry.hash == hash && entry.key.equals(key)) {
+                return item;
             }
+            item = (item + 1) & mask;
         }
-        return null;
+        return -1;
     }
 
+    /**
+     * A null value removes the key.
+     */
     @Override
     public T put(ByteString str, T value) {
-        if (bucketsRemoved << 2 > bucketsFilled) {
-            rehash();
-        } else if (bucketsFilled << 2 > table.length) {
-            rehash();
+        if (value == null) {
+            return remove(str);
         }
-        return put0(str, value);
+        long hash = hash(str);
+        int item = find(str, hash);
+        if (item >= 0) {
+            return table[item].setValue(value);
+        }
+        if ((size + 1) * 4L > table.length * 3L) {
+            rehash(table.length);
+        }
+        insert(new HashEntry<>(str, hash, value));
+        size++;
+        return null;
     }
 
-
     @Override
     public T remove(Object key) {
-        return put((ByteString) key, null);
+        ByteString str = (ByteString) key;
+        int item = find(str, hash(str));
+        if (item < 0) {
+            return null;
+        }
+        T value = table[item].value;
+        shiftBack(item);
+        size--;
+        return value;
     }
 
-    private T put0(ByteString str, T val) {
-        for (int n = 0; n < table.length; n++) {
-            int item = openAddressItem(str, n);
-
-            HashEntry<T> entry = table[item];
-
-            if (entry == null) {
-                if (val != null) {
-                    table[item] = new HashEntry<>(str, val);
-                    bucketsFilled++;
-                }
-                return null;
+    /**
+     * Places an absent entry, displacing entries closer to their home slot.
+     */
+    private void insert(HashEntry<T> entry) {
+        int item = (int) entry.hash & mask;
+        int probe = 0;
+        while (true) {
+            HashEntry<T> resident = table[item];
+            if (resident == null) {
+                table[item] = entry;
+                break;
             }
-
-            if (entry.key.equals(str)) {
-                T oldVal = entry.setValue(val);
-                if (val == null ^ oldVal == null) {
-                    if (val == null) {
-                        bucketsRemoved++;
-                    } else {
-                        bucketsRemoved--;
-                    }
-                }
-                return oldVal;
+            int residentProbe = probe(resident, item);
+            if (residentProbe < probe) {
+                table[item] = entry;
+                maxProbe = Math.max(maxProbe, probe);
+                entry = resident;
+                probe = residentProbe;
             }
+            item = (item + 1) & mask;
+            probe++;
+        }
+        maxProbe = Math.max(maxProbe, probe);
+        // a degenerate hasher would grow the table forever, give up at 1/8 load
+        if (maxProbe > MAX_PROBE_LENGTH && size * 8L > table.length && table.length < 1 << MAX_BITS) {
+            rehash(table.length * 2);
         }
-        return null;
     }
 
-    private T put0(Entry<ByteString, T> entry) {
-        return put0(entry.getKey(), entry.getValue());
+    private void shiftBack(int item) {
+        int next = (item + 1) & mask;
+        while (table[next] != null && probe(table[next], next) > 0) {
+            table[item] = table[next];
+            item = next;
+            next = (next + 1) & mask;
+        }
+        table[item] = null;
     }
 
-    private void rehash() {
+    private int probe(HashEntry<T> entry, int item) {
+        return (item - (int) entry.hash) & mask;
+    }
+
+    private void rehash(int capacity) {
         HashEntry<T>[] oldTable = table;
+        int oldSize = size;
 
-        allocateCapacity(size());
+        allocateCapacity(capacity);
 
-        Stream.of(oldTable)
-                .filter(ByteStringMap::entryFilled)
-                .forEach(this::put0);
+        for (HashEntry<T> entry : oldTable) {
+            if (entry != null) {
+                insert(entry);
+            }
+        }
+        size = oldSize;
     }
 
-    private int openAddressItem(ByteString str, int nHash) {
-        return (str.hashCode() + nHash * nHash) & ((1 << bits) - 1);
+    /**
+     * Mixes the hasher output, linear probing needs well spread low bits.
+     */
+    private long hash(ByteString str) {
+        long h = hasher.hashCode(str, 0, str.length());
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return h;
     }
 
     @Override
     public int size() {
-        return bucketsFilled - bucketsRemoved;
+        return size;
     }
 
     @Override
@@ -219,10 +281,12 @@ public class ByteStringMap<T> implements Map<ByteString, T> {
 
     static class HashEntry<T> implements Entry<ByteString, T> {
         final ByteString key;
+        final long hash;
         T value;
 
-        HashEntry(ByteString key, T value) {
+        HashEntry(ByteString key, long hash, T value) {
             this.key = key;
+            this.hash = hash;
             this.value = value;
         }
 
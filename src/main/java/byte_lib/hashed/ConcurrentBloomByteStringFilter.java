@@ -0,0 +1,93 @@
+package byte_lib.hashed;
+
+import byte_lib.string.ByteString;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static byte_lib.hashed.BloomByteStringFilter.LONG_BITS_SIZE;
+import static byte_lib.hashed.BloomByteStringFilter.LONG_BITS_SIZE_MASK;
+
+/**
+ * Bloom filter that may be shared between threads. Bits are set by CAS,
+ * and hashing is the same as in {@link BloomByteStringFilter}, so both
+ * filters hold the same bits for the same elements.
+ * When equal elements are added concurrently, more than one add may
+ * report the element as new. clear() is not atomic with concurrent adds.
+ */
+class ConcurrentBloomByteStringFilter implements ByteStringFilter {
+    public static final int MAX_SIZE_DEGREE = 36;
+
+    private final AtomicLongArray data;
+    private final int nHashes;
+    private final long mask;
+    private final ByteStringHash hasher;
+    private volatile boolean empty;
+
+    ConcurrentBloomByteStringFilter(int sz2degree, int nHashes) {
+        this(sz2degree, nHashes, ByteStringHash.xx());
+    }
+
+    ConcurrentBloomByteStringFilter(int sz2degree, int nHashes, ByteStringHash hasher) {
+        if (sz2degree > MAX_SIZE_DEGREE) throw new IllegalArgumentException("sz2degree");
+        if (hasher == null) throw new IllegalArgumentException("hasher");
+        this.nHashes = nHashes;
+        if (sz2degree < LONG_BITS_SIZE) sz2degree = LONG_BITS_SIZE;
+        data = new AtomicLongArray(1 << (sz2degree - LONG_BITS_SIZE));
+        mask = (1L << sz2degree) - 1;
+        this.hasher = hasher;
+        empty = true;
+    }
+
+    @Override
+    public boolean contains(ByteString str, ByteString... other) {
+        long h1 = hasher.hashCode(str, other);
+        long h2 = (h1 >>> 32) | 1;
+        for (int i = 0; i < nHashes; i++) {
+            long hash = (h1 + i * h2) & mask;
+            long msk = 1L << (hash & LONG_BITS_SIZE_MASK);
+            if ((data.get((int) (hash >>> LONG_BITS_SIZE)) & msk) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean add(ByteString str, ByteString... other) {
+        long h1 = hasher.hashCode(str, other);
+        long h2 = (h1 >>> 32) | 1;
+        boolean added = false;
+        for (int i = 0; i < nHashes; i++) {
+            long hash = (h1 + i * h2) & mask;
+            added |= setBit((int) (hash >>> LONG_BITS_SIZE), 1L << (hash & LONG_BITS_SIZE_MASK));
+        }
+        if (empty) {
+            empty = false;
+        }
+        return added;
+    }
+
+    private boolean setBit(int longIdx, long msk) {
+        long val = data.get(longIdx);
+        while ((val & msk) == 0) {
+            if (data.compareAndSet(longIdx, val, val | msk)) {
+                return true;
+            }
+            val = data.get(longIdx);
+        }
+        return false;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return empty;
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < data.length(); i++) {
+            data.set(i, 0);
+        }
+        empty = true;
+    }
+}
@@ -0,0 +1,385 @@
+package byte_lib.hashed;
+
+import byte_lib.string.ByteString;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Concurrent open addressing map. Keys are spread over lock striped
+ * segments, each holding keys and values interleaved in one atomic array,
+ * so lookups take no locks and allocate nothing. A segment is rehashed
+ * under its own lock while the other segments keep serving writes.
+ * Removed keys stay in the table with a null value until the next rehash
+ * of their segment, so probe chains seen by lock-free readers stay intact.
+ */
+public class ConcurrentByteStringMap<T> extends AbstractMap<ByteString, T>
+        implements ConcurrentMap<ByteString, T> {
+    private static final Logger LOG = LoggerFactory.getLogger(ConcurrentByteStringMap.class);
+
+    public static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+
+    private final ByteStringHash hasher;
+    private final Segment[] segments;
+    private final int segmentMask;
+
+    public ConcurrentByteStringMap() {
+        this(10);
+    }
+
+    public ConcurrentByteStringMap(int capacity) {
+        this(capacity, DEFAULT_CONCURRENCY_LEVEL, ByteStringHash.simple());
+    }
+
+    public ConcurrentByteStringMap(int capacity, int concurrencyLevel, ByteStringHash hasher) {
+        if (capacity <= 0) throw new IllegalArgumentException("capacity");
+        if (concurrencyLevel <= 0) throw new IllegalArgumentException("concurrencyLevel");
+        if (hasher == null) throw new IllegalArgumentException("hasher");
+        this.hasher = hasher;
+        int nSegments = 1 << Util.nBits(concurrencyLevel - 1);
+        segmentMask = nSegments - 1;
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Segment[] segments = new ConcurrentByteStringMap.Segment[nSegments];
+        this.segments = segments;
+        int segmentCapacity = Math.max(1, capacity / nSegments);
+        for (int i = 0; i < nSegments; i++) {
+            segments[i] = new Segment(segmentCapacity);
+        }
+    }
+
+    private long hash(Object key) {
+        ByteString str = (ByteString) key;
+        long h = hasher.hashCode(str, 0, str.length());
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private Segment segment(long hash) {
+        return segments[(int) (hash >>> 32) & segmentMask];
+    }
+
+    @Override
+    public T get(Object key) {
+        long hash = hash(key);
+        return segment(hash).get((ByteString) key, hash);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public T put(ByteString key, T value) {
+        Objects.requireNonNull(value);
+        long hash = hash(key);
+        return segment(hash).put(key, hash, value, false);
+    }
+
+    @Override
+    public T putIfAbsent(ByteString key, T value) {
+        Objects.requireNonNull(value);
+        long hash = hash(key);
+        return segment(hash).put(key, hash, value, true);
+    }
+
+    @Override
+    public T remove(Object key) {
+        long hash = hash(key);
+        return segment(hash).replace((ByteString) key, hash, null, null);
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        if (value == null) {
+            return false;
+        }
+        long hash = hash(key);
+        return segment(hash).replace((ByteString) key, hash, value, null) != null;
+    }
+
+    @Override
+    public boolean replace(ByteString key, T oldValue, T newValue) {
+        Objects.requireNonNull(oldValue);
+        Objects.requireNonNull(newValue);
+        long hash = hash(key);
+        return segment(hash).replace(key, hash, oldValue, newValue) != null;
+    }
+
+    @Override
+    public T replace(ByteString key, T value) {
+        Objects.requireNonNull(value);
+        long hash = hash(key);
+        return segment(hash).replace(key, hash, null, value);
+    }
+
+    @Override
+    public int size() {
+        long size = 0;
+        for (Segment segment : segments) {
+            size += segment.size;
+        }
+        return (int) Math.min(Integer.MAX_VALUE, size);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        for (Segment segment : segments) {
+            if (segment.size != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    @Override
+    public Set<Entry<ByteString, T>> entrySet() {
+        return new AbstractSet<Entry<ByteString, T>>() {
+            @Override
+            public Iterator<Entry<ByteString, T>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return ConcurrentByteStringMap.this.size();
+            }
+        };
+    }
+
+    /**
+     * Weakly consistent: walks the tables current at the time each
+     * segment is reached, and removal goes through the map.
+     */
+    private class EntryIterator implements Iterator<Entry<ByteString, T>> {
+        private int segment = -1;
+        private AtomicReferenceArray<Object> table;
+        private int slot;
+        private Entry<ByteString, T> next;
+        private ByteString last;
+
+        EntryIterator() {
+            advance();
+        }
+
+        @SuppressWarnings("unchecked")
+        private void advance() {
+            next = null;
+            while (next == null) {
+                if (table == null || slot == table.length()) {
+                    if (++segment == segments.length) {
+                        return;
+                    }
+                    table = segments[segment].table;
+                    slot = 0;
+                    continue;
+                }
+                ByteString key = (ByteString) table.get(slot);
+                T value = (T) table.get(slot + 1);
+                slot += 2;
+                if (key != null && value != null) {
+                    next = new SimpleImmutableEntry<>(key, value);
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Entry<ByteString, T> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Entry<ByteString, T> ret = next;
+            last = ret.getKey();
+            advance();
+            return ret;
+        }
+
+        @Override
+        public void remove() {
+            if (last == null) {
+                throw new IllegalStateException();
+            }
+            ConcurrentByteStringMap.this.remove(last);
+            last = null;
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private final class Segment extends ReentrantLock {
+        volatile AtomicReferenceArray<Object> table;
+        volatile int size;
+        private int filled;
+        private int removed;
+        private int mask;
+
+        Segment(int capacity) {
+            table = allocateCapacity(capacity);
+        }
+
+        private AtomicReferenceArray<Object> allocateCapacity(int capacity) {
+            capacity *= 4;
+            int bits = Util.nBits(capacity);
+            if (bits < 3) bits = 3;
+            mask = (1 << bits) - 1;
+            filled = 0;
+            removed = 0;
+            return new AtomicReferenceArray<>(2 << bits);
+        }
+
+        @SuppressWarnings("unchecked")
+        T get(ByteString key, long hash) {
+            AtomicReferenceArray<Object> table = this.table;
+            int slots = table.length() >> 1;
+            int mask = slots - 1;
+            for (int n = 0; n < slots; n++) {
+                int item = openAddressItem(hash, n, mask) << 1;
+                Object entryKey = table.get(item);
+                if (entryKey == null) {
+                    return null;
+                }
+                if (entryKey.equals(key)) {
+                    return (T) table.get(item + 1);
+                }
+            }
+            return null;
+        }
+
+        @SuppressWarnings("unchecked")
+        T put(ByteString key, long hash, T value, boolean onlyIfAbsent) {
+            lock();
+            try {
+                if (removed << 2 > filled || filled << 2 > mask + 1) {
+                    rehash();
+                }
+                int item = find(key, hash);
+                if (item < 0) {
+                    item = -item - 1;
+                    // value goes first, so a reader that sees the key sees it too
+                    table.set(item + 1, value);
+                    table.set(item, key);
+                    filled++;
+                    size++;
+                    return null;
+                }
+                T oldValue = (T) table.get(item + 1);
+                if (oldValue == null) {
+                    removed--;
+                    size++;
+                } else if (onlyIfAbsent) {
+                    return oldValue;
+                }
+                table.set(item + 1, value);
+                return oldValue;
+            } finally {
+                unlock();
+            }
+        }
+
+        /**
+         * Replaces the value of a present key, if expected is null or equals it.
+         * A null value removes the key. Returns the old value or null.
+         */
+        @SuppressWarnings("unchecked")
+        T replace(ByteString key, long hash, Object expected, T value) {
+            lock();
+            try {
+                int item = find(key, hash);
+                if (item < 0) {
+                    return null;
+                }
+                T oldValue = (T) table.get(item + 1);
+                if (oldValue == null || (expected != null && !expected.equals(oldValue))) {
+                    return null;
+                }
+                table.set(item + 1, value);
+                if (value == null) {
+                    removed++;
+                    size--;
+                }
+                return oldValue;
+            } finally {
+                unlock();
+            }
+        }
+
+        void clear() {
+            lock();
+            try {
+                table = allocateCapacity(10);
+                size = 0;
+            } finally {
+                unlock();
+            }
+        }
+
+        /**
+         * Slot of the key, or -(free slot + 1) when it is absent.
+         */
+        private int find(ByteString key, long hash) {
+            for (int n = 0; n <= mask; n++) {
+                int item = openAddressItem(hash, n, mask) << 1;
+                Object entryKey = table.get(item);
+                if (entryKey == null) {
+                    return -item - 1;
+                }
+                if (entryKey.equals(key)) {
+                    return item;
+                }
+            }
+            throw new IllegalStateException("table is full");
+        }
+
+        /**
+         * Builds a new table aside and publishes it in one volatile write,
+         * the old one is never written again so readers stay consistent.
+         */
+        private void rehash() {
+            AtomicReferenceArray<Object> oldTable = table;
+            LOG.debug("Rehash {} {} {}", filled, removed, oldTable.length() >> 1);
+            AtomicReferenceArray<Object> newTable = allocateCapacity(Math.max(1, size));
+
+            for (int i = 0; i < oldTable.length(); i += 2) {
+                Object key = oldTable.get(i);
+                Object value = oldTable.get(i + 1);
+                if (key == null || value == null) {
+                    continue;
+                }
+                long hash = hash(key);
+                for (int n = 0; n <= mask; n++) {
+                    int item = openAddressItem(hash, n, mask) << 1;
+                    if (newTable.get(item) == null) {
+                        newTable.set(item + 1, value);
+                        newTable.set(item, key);
+                        break;
+                    }
+                }
+                filled++;
+            }
+            table = newTable;
+        }
+    }
+
+    private static int openAddressItem(long hash, int nHash, int mask) {
+        return (int) ((hash + nHash * nHash) & mask);
+    }
+}
@@ -0,0 +1,124 @@
+package byte_lib.hashed;
+
+import byte_lib.string.ByteString;
+
+import java.util.Arrays;
+
+/**
+ * Count-Min sketch: depth rows of 2^width2degree int counters. The estimate
+ * of a key is the minimum of its counters, never below the real count and
+ * above it by at most e / 2^width2degree of the total count with
+ * probability 1 - e^-depth. Counters saturate at Integer.MAX_VALUE.
+ * Adds use conservative update, only raising the counters that are
+ * at the minimum, which keeps overestimates lower.
+ */
+public class CountMinSketch {
+    public static final int MAX_DEPTH = 32;
+
+    private final int[] table;
+    private final int depth;
+    private final int width2degree;
+    private final int mask;
+    private final ByteStringHash hasher;
+    private final int[] idx;
+    private long totalCount;
+
+    public CountMinSketch(int width2degree, int depth) {
+        this(width2degree, depth, ByteStringHash.xx());
+    }
+
+    public CountMinSketch(int width2degree, int depth, ByteStringHash hasher) {
+        if (width2degree < 1 || width2degree > 30) throw new IllegalArgumentException("width2degree");
+        if (depth < 1 || depth > MAX_DEPTH) throw new IllegalArgumentException("depth");
+        if ((long) depth << width2degree > Integer.MAX_VALUE - 8) throw new IllegalArgumentException("depth");
+        if (hasher == null) throw new IllegalArgumentException("hasher");
+        this.depth = depth;
+        this.width2degree = width2degree;
+        this.hasher = hasher;
+        mask = (1 << width2degree) - 1;
+        table = new int[depth << width2degree];
+        idx = new int[depth];
+    }
+
+    /**
+     * Sketch overestimating by at most epsilon * total count
+     * with probability 1 - delta.
+     */
+    public static CountMinSketch withError(double epsilon, double delta) {
+        if (epsilon <= 0 || epsilon >= 1) throw new IllegalArgumentException("epsilon");
+        if (delta <= 0 || delta >= 1) throw new IllegalArgumentException("delta");
+        int width2degree = Util.nBits((long) Math.ceil(Math.E / epsilon) - 1);
+        int depth = (int) Math.ceil(Math.log(1 / delta));
+        return new CountMinSketch(width2degree, depth);
+    }
+
+    public long add(ByteString str, ByteString... other) {
+        return add(1, str, other);
+    }
+
+    /**
+     * Adds count occurrences of the key, returns the new estimate.
+     */
+    public long add(long count, ByteString str, ByteString... other) {
+        if (count < 0) throw new IllegalArgumentException("count");
+        long h1 = hasher.hashCode(str, other);
+        long h2 = (h1 >>> 32) | 1;
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < depth; i++) {
+            idx[i] = (i << width2degree) | (int) ((h1 + i * h2) & mask);
+            min = Math.min(min, table[idx[i]]);
+        }
+        long estimate = Math.min(Integer.MAX_VALUE, min + count);
+        for (int i = 0; i < depth; i++) {
+            if (table[idx[i]] < estimate) {
+                table[idx[i]] = (int) estimate;
+            }
+        }
+        totalCount += count;
+        return estimate;
+    }
+
+    public long estimate(ByteString str, ByteString... other) {
+        long h1 = hasher.hashCode(str, other);
+        long h2 = (h1 >>> 32) | 1;
+        int min = Integer.MAX_VALUE;
+        for (int i = 0; i < depth; i++) {
+            min = Math.min(min, table[(i << width2degree) | (int) ((h1 + i * h2) & mask)]);
+        }
+        return min;
+    }
+
+    /**
+     * Adds the counters of a sketch of the same shape and hasher.
+     */
+    public void merge(CountMinSketch other) {
+        if (other.depth != depth || other.width2degree != width2degree) {
+            throw new IllegalArgumentException("other");
+        }
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (int) Math.min(Integer.MAX_VALUE, (long) table[i] + other.table[i]);
+        }
+        totalCount += other.totalCount;
+    }
+
+    public long totalCount() {
+        return totalCount;
+    }
+
+    public int depth() {
+        return depth;
+    }
+
+    public int width() {
+        return mask + 1;
+    }
+
+    public boolean isEmpty() {
+        return totalCount == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(table, 0);
+        totalCount = 0;
+    }
+}
@@ -0,0 +1,222 @@
+package byte_lib.hashed;
+
+import byte_lib.string.ByteString;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+
+/**
+ * Cuckoo filter: fingerprints of fingerprintBits bits in buckets of four,
+ * bit packed into a long[]. An element lives in one of two buckets, the
+ * second one derived from the first and the fingerprint only, so elements
+ * can be moved and removed without knowing the keys.
+ * Fingerprints are kept as a set: adding an element whose fingerprint is
+ * already in one of its buckets changes nothing and returns false.
+ * So only elements for which add returned true may be removed, once,
+ * otherwise the fingerprint of another element goes away.
+ * At full load the false-positive rate is about 8 / 2^fingerprintBits,
+ * the default of 13 bits gives 0.1% at under 14 bits per element.
+ */
+class CuckooByteStringFilter implements ByteStringFilter {
+    private static final Logger LOG = LoggerFactory.getLogger(CuckooByteStringFilter.class);
+
+    public static final int BUCKET_SIZE = 4;
+    public static final int MAX_KICKS = 500;
+    public static final int DEFAULT_FINGERPRINT_BITS = 13;
+    public static final double MAX_LOAD = 0.95;
+    private static final int MAX_BUCKETS = 1 << 28;
+
+    private final long[] data;
+    private final int fingerprintBits;
+    private final long fingerprintMask;
+    private final int nBuckets;
+    private final ByteStringHash hasher;
+    private long victim;
+    private int victimBucket;
+    private int size;
+    private long random = 0x9E3779B97F4A7C15L;
+
+    CuckooByteStringFilter(int capacity) {
+        this(capacity, DEFAULT_FINGERPRINT_BITS, ByteStringHash.xx());
+    }
+
+    CuckooByteStringFilter(int capacity, int fingerprintBits, ByteStringHash hasher) {
+        if (capacity <= 0) throw new IllegalArgumentException("capacity");
+        if (fingerprintBits < 4 || fingerprintBits > 32) throw new IllegalArgumentException("fingerprintBits");
+        if (hasher == null) throw new IllegalArgumentException("hasher");
+        this.fingerprintBits = fingerprintBits;
+        this.hasher = hasher;
+        fingerprintMask = (1L << fingerprintBits) - 1;
+        long buckets = (long) Math.ceil(capacity / (BUCKET_SIZE * MAX_LOAD));
+        if (buckets > MAX_BUCKETS) throw new IllegalArgumentException("capacity");
+        nBuckets = (int) buckets;
+        long slotBits = (long) BUCKET_SIZE * fingerprintBits * nBuckets;
+        data = new long[(int) ((slotBits + 63) >>> 6)];
+        LOG.debug("Cuckoo filter of {} buckets, {} bytes", nBuckets, data.length * 8L);
+    }
+
+    @Override
+    public boolean contains(ByteString str, ByteString... other) {
+        long hash = hasher.hashCode(str, other);
+        long fp = fingerprint(hash);
+        int i1 = bucket(hash);
+        int i2 = altBucket(i1, fp);
+        return indexOf(i1, fp) != -1 || indexOf(i2, fp) != -1 || isVictim(i1, i2, fp);
+    }
+
+    /**
+     * @throws IllegalStateException when no slot could be freed,
+     *                               the filter has to be built larger
+     */
+    @Override
+    public boolean add(ByteString str, ByteString... other) {
+        long hash = hasher.hashCode(str, other);
+        long fp = fingerprint(hash);
+        int i1 = bucket(hash);
+        int i2 = altBucket(i1, fp);
+        if (indexOf(i1, fp) != -1 || indexOf(i2, fp) != -1 || isVictim(i1, i2, fp)) {
+            return false;
+        }
+        if (victim != 0) {
+            throw new IllegalStateException("cuckoo filter is full");
+        }
+        size++;
+        if (insert(i1, fp) || insert(i2, fp)) {
+            return true;
+        }
+
+        int bucket = (nextRandom() & 1) == 0 ? i1 : i2;
+        for (int n = 0; n < MAX_KICKS; n++) {
+            int slot = slot(bucket, nextRandom() & (BUCKET_SIZE - 1));
+            long kicked = get(slot);
+            set(slot, fp);
+            fp = kicked;
+            bucket = altBucket(bucket, fp);
+            if (insert(bucket, fp)) {
+                return true;
+            }
+        }
+        victim = fp;
+        victimBucket = bucket;
+        return true;
+    }
+
+    @Override
+    public boolean remove(ByteString str, ByteString... other) {
+        long hash = hasher.hashCode(str, other);
+        long fp = fingerprint(hash);
+        int i1 = bucket(hash);
+        int i2 = altBucket(i1, fp);
+        if (isVictim(i1, i2, fp)) {
+            victim = 0;
+            size--;
+            return true;
+        }
+        int idx = indexOf(i1, fp);
+        if (idx == -1) {
+            idx = indexOf(i2, fp);
+        }
+        if (idx == -1) {
+            return false;
+        }
+        set(idx, 0);
+        size--;
+        if (victim != 0 && insert(victimBucket, victim)) {
+            victim = 0;
+        }
+        return true;
+    }
+
+    private long fingerprint(long hash) {
+        long fp = (hash >>> 32) & fingerprintMask;
+        return fp == 0 ? 1 : fp;
+    }
+
+    private int bucket(long hash) {
+        return (int) (((hash & 0xFFFFFFFFL) * nBuckets) >>> 32);
+    }
+
+    /**
+     * (h(fp) - bucket) mod nBuckets maps the two buckets of an element
+     * onto each other for any table size, not only powers of two.
+     */
+    private int altBucket(int bucket, long fp) {
+        int alt = bucket((fp * 0x9E3779B97F4A7C15L) >>> 32) - bucket;
+        return alt < 0 ? alt + nBuckets : alt;
+    }
+
+    private boolean isVictim(int i1, int i2, long fp) {
+        return victim == fp && (victimBucket == i1 || victimBucket == i2);
+    }
+
+    private int indexOf(int bucket, long fp) {
+        int slot = slot(bucket, 0);
+        for (int j = 0; j < BUCKET_SIZE; j++) {
+            if (get(slot + j) == fp) {
+                return slot + j;
+            }
+        }
+        return -1;
+    }
+
+    private boolean insert(int bucket, long fp) {
+        int slot = slot(bucket, 0);
+        for (int j = 0; j < BUCKET_SIZE; j++) {
+            if (get(slot + j) == 0) {
+                set(slot + j, fp);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int slot(int bucket, int j) {
+        return bucket * BUCKET_SIZE + j;
+    }
+
+    private long get(int slot) {
+        long bit = (long) slot * fingerprintBits;
+        int word = (int) (bit >>> 6);
+        int off = (int) (bit & 63);
+        long value = data[word] >>> off;
+        if (off + fingerprintBits > 64) {
+            value |= data[word + 1] << (64 - off);
+        }
+        return value & fingerprintMask;
+    }
+
+    private void set(int slot, long fp) {
+        long bit = (long) slot * fingerprintBits;
+        int word = (int) (bit >>> 6);
+        int off = (int) (bit & 63);
+        data[word] = (data[word] & ~(fingerprintMask << off)) | (fp << off);
+        if (off + fingerprintBits > 64) {
+            int shift = 64 - off;
+            data[word + 1] = (data[word + 1] & ~(fingerprintMask >>> shift)) | (fp >>> shift);
+        }
+    }
+
+    private int nextRandom() {
+        random ^= random << 13;
+        random ^= random >>> 7;
+        random ^= random << 17;
+        return (int) random;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(data, 0);
+        victim = 0;
+        size = 0;
+    }
+}
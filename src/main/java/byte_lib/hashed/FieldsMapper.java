@@ -0,0 +1,26 @@
+package byte_lib.hashed;
+
+import byte_lib.string.ByteString;
+
+class FieldsMapper implements IdxMapper {
+    private final ByteString separator;
+    private final int fieldStart;
+    private final int fieldEnd;
+
+    FieldsMapper(ByteString separator, int fieldStart, int fieldEnd) {
+        if (fieldStart > fieldEnd) throw new IllegalArgumentException("fieldStart");
+        this.separator = separator;
+        this.fieldStart = fieldStart;
+        this.fieldEnd = fieldEnd;
+    }
+
+    @Override
+    public long map(ByteString str, long start, long end) {
+        return str.fieldsIdx(separator, start, end, fieldStart, fieldEnd);
+    }
+
+    @Override
+    public void mapRange(ByteString str, long start, long end, long[] range) {
+        str.fieldsRange(separator, start, end, fieldStart, fieldEnd, range);
+    }
+}
@@ -1,29 +1,33 @@
 package byte_lib.hashed;
 
 import byte_lib.string.ByteString;
+import byte_lib.string.ByteStringView;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Predicate;
+import java.util.stream.LongStream;
 
 import static byte_lib.io.ByteFiles.*;
 import static byte_lib.string.ByteString.*;
-import static java.util.Arrays.stream;
 import static java.util.stream.Collectors.toList;
 
-public class FileIdxByteStringMultiMap {
+/**
+ * Multimap over records of a file that is not kept in memory. The index,
+ * in the layout of {@link IdxByteStringMultiMap#writeIdx}, is written
+ * next to the file on first use and memory mapped afterwards; keys
+ * and values are read from the file on lookup.
+ */
+public class FileIdxByteStringMultiMap implements AutoCloseable {
     private final static Logger LOG = LoggerFactory.getLogger(FileIdxByteStringMultiMap.class);
     private final ByteStringHash hasher;
 
-    private ByteString content;
-
-    private long [][]table;
-    private int []tableLen;
-    private int bucketsFilled;
-    private int bits;
+    private final IdxFile idx;
+    private final int bits;
+    private final int partitionBits;
 
     private File file;
 
@@ -31,11 +35,26 @@ public class FileIdxByteStringMultiMap {
     private final IdxMapper valueMapper;
     private final RandomAccessFile randomAccessFile;
     private final File idxFile;
+    private byte []entryBuf = new byte[256];
+    private ByteStringView entry = new ByteStringView(entryBuf);
+    private ByteStringView valueView = new ByteStringView(entryBuf);
 
     public FileIdxByteStringMultiMap(File file,
                                      ByteString itemSeprartor,
                                      IdxMapper keyMapper,
                                      IdxMapper valueMapper) {
+        this(file, itemSeprartor, keyMapper, valueMapper, ByteStringHash.simple());
+    }
+
+    /**
+     * The index file stores hash table buckets, so it has to be
+     * reopened with the same hasher it was built with.
+     */
+    public FileIdxByteStringMultiMap(File file,
+                                     ByteString itemSeprartor,
+                                     IdxMapper keyMapper,
+                                     IdxMapper valueMapper,
+                                     ByteStringHash hasher) {
 
         this.file = file;
 
@@ -52,21 +71,18 @@ public class FileIdxByteStringMultiMap {
         this.keyMapper = keyMapper;
         this.valueMapper = valueMapper;
 
-        hasher = ByteStringHash.simple();
+        this.hasher = hasher;
 
-        idxFile = new File(this.file.getPath() + ".idx.snappy");
+        idxFile = new File(this.file.getPath() + ".idx");
         if (!idxFile.isFile()) {
-            try (ByteString content = readAll(file)) {
-                this.content = content;
-                int records = content.howMuch(itemSeprartor);
-                allocateCapacity(records);
-                this.content.iterateIdx(itemSeprartor, this::put0);
-                writeIdx();
-                this.content = null;
+            try (ByteString content = load(this.file)) {
+                new IdxByteStringMultiMap(content, itemSeprartor, keyMapper, valueMapper, hasher)
+                        .writeIdx(idxFile);
             }
-        } else {
-            readIdx();
         }
+        idx = IdxFile.open(idxFile, IdxFile.MULTI_MAP, this.file.length());
+        bits = idx.bits;
+        partitionBits = idx.partitionBits;
 
         try {
             randomAccessFile = new RandomAccessFile(this.file, "r");
@@ -76,106 +92,60 @@ public class FileIdxByteStringMultiMap {
 
     }
 
-    private void readIdx() {
-        LOG.info("Reading " + idxFile);
-        try (DataInputStream in =
-                     new DataInputStream(inputStream(idxFile))) {
-            table = new long[in.readInt()][];
-            tableLen = new int[table.length];
-            for (int i = 0; i < table.length; i++) {
-                tableLen[i] = in.readInt();
-                table[i] = new long[Util.nBits(tableLen[i])];
-                for (int j = 0; j < tableLen[i]; j++) {
-                    table[i][j] = in.readLong();
-                }
-            }
-        } catch (IOException e) {
-            throw new IOError(e);
+    public List<ByteString> get(Object key) {
+        int item = find((ByteString) key);
+        if (item < 0) {
+            return Collections.emptyList();
         }
+        return LongStream.range(idx.get(item), idx.get(item + 1))
+                .map(this::record)
+                .mapToObj(this::value)
+                .collect(toList());
     }
 
-    private void writeIdx() {
-        LOG.info("Writing " + idxFile);
-        try (DataOutputStream out =
-                     new DataOutputStream(printStream(idxFile))) {
-            out.writeInt(table.length);
-            for (int i = 0; i < table.length; i++) {
-                out.writeInt(tableLen[i]);
-                for (int j = 0; j < tableLen[i]; j++) {
-                    out.writeLong(table[i][j]);
-                }
+    /**
+     * Passes a flyweight of each of the key's values to it, in file order,
+     * until it returns false. The flyweight is moved to the next value after
+     * the call returns; copyOf() it to keep it. Nothing is allocated once
+     * the read buffer has grown to the longest record.
+     */
+    public void forEachValue(ByteString key, Predicate<ByteString> it) {
+        int item = find(key);
+        if (item < 0) {
+            return;
+        }
+        long to = idx.get(item + 1);
+        for (long i = idx.get(item); i < to; i++) {
+            ByteString entry = readEntry(record(i));
+            long valueIdx = valueMapper.map(entry, 0, entry.length());
+            if (!it.test(valueView.moveTo(idxStart(valueIdx), idxEnd(valueIdx)))) {
+                return;
             }
-        } catch (IOException e) {
-            throw new IOError(e);
         }
     }
 
-    private void allocateCapacity(int capacity) {
-        capacity *= 4;
-        bits = Util.nBits(capacity);
-        if (bits < 3) bits = 3;
-        table = new long[1 << bits][];
-        tableLen = new int[1 << bits];
-        LOG.info("Rehash {} {}", bucketsFilled, table.length);
-        bucketsFilled = 0;
-    }
-    
-    public List<ByteString> get(Object key) {
+    private int find(ByteString key) {
         if (isEmpty()) {
-            return Collections.emptyList();
+            return -1;
         }
-        ByteString keyStr = (ByteString) key;
-        long keyLen = keyStr.length();
-        long hash = hasher.hashCode(keyStr, 0L, keyLen);
-        for (int n = 0; n < table.length; n++) {
-            int item = openAddressItem(hash, n);
-
-            long []entry = table[item];
-            if (entry == null) {
-                return Collections.emptyList();
-            }
-            if (isChunkKey(entry[0], keyStr)) {
-                return stream(entry, 0, tableLen[item])
-                        .mapToObj(this::value)
-                        .collect(toList());
-            }
-        }
-        return Collections.emptyList();
-    }
-
-    private boolean put0(long start, long end) {
-        long keyIdx = keyMapper.map(content, start, end);
-        long keyStart = idxStart(keyIdx);
-        long keyLen = idxLen(keyIdx);
-        long hash = hasher.hashCode(content, keyStart, keyLen);
-        for (int n = 0; n < table.length; n++) {
-            int item = openAddressItem(hash, n);
-
-            long []entry = table[item];
-
-            if (entry == null) {
-                table[item] = new long[1];
-                addTable(item, encodeIdx(start, end));
-                bucketsFilled++;
-                return true;
+        long hash = hasher.hashCode(key, 0L, key.length());
+        int base = IdxScan.partitionBase(hash, bits, partitionBits);
+        for (int n = 0; n < 1 << bits; n++) {
+            int item = IdxScan.openAddressItem(hash, base, n, bits, partitionBits);
+
+            long from = idx.get(item);
+            if (from == idx.get(item + 1)) {
+                return -1;
             }
-
-            if (isChunkKey(entry[0], content, keyStart, keyLen)) {
-                addTable(item, encodeIdx(start, end));
-                bucketsFilled++;
-                return true;
+            if (isChunkKey(record(from), key)) {
+                return item;
             }
         }
-        return true;
+        return -1;
     }
 
-    private void addTable(int item, long v) {
-        int len = tableLen[item];
-        if (len == table[item].length) {
-            table[item] = Arrays.copyOf(table[item], table[item].length * 2);
-        }
-        table[item][len] = v;
-        tableLen[item]++;
+    private long record(long i) {
+        return idx.get((1L << bits) + 1 + i);
     }
 
     private boolean isChunkKey(long entryIdx, ByteString key2) {
@@ -183,18 +153,8 @@ public class FileIdxByteStringMultiMap {
     }
 
     private boolean isChunkKey(long entryIdx, ByteString key2Entry, long key2Start, long key2Len) {
-        long entryStart = idxStart(entryIdx);
-        long entryLen = idxLen(entryIdx);
-
-        ByteString key1Entry;
-        long keyIdx;
-        if (content == null) {
-            key1Entry = seekAndRead(entryIdx);
-            keyIdx = keyMapper.map(key1Entry, 0, key1Entry.length());
-        } else {
-            key1Entry = content;
-            keyIdx = keyMapper.map(content, entryStart, entryStart + entryLen);
-        }
+        ByteString key1Entry = readEntry(entryIdx);
+        long keyIdx = keyMapper.map(key1Entry, 0, key1Entry.length());
 
         long key1Start = idxStart(keyIdx);
         long key1Len = idxLen(keyIdx);
@@ -203,13 +163,26 @@ public class FileIdxByteStringMultiMap {
             return false;
         }
 
-        for (long i = 0; i < key2Len; i++) {
-            if (key1Entry.byteAt(key1Start + i) != key2Entry.byteAt(key2Start + i)) {
-                return false;
-            }
-        }
+        return key1Entry.regionMatches(key1Start, key2Entry, key2Start, key2Len);
+    }
 
-        return true;
+    /**
+     * Reads the record into the reused buffer, returns a flyweight over it.
+     */
+    private ByteString readEntry(long entryIdx) {
+        int len = (int) idxLen(entryIdx);
+        if (len > entryBuf.length) {
+            entryBuf = new byte[Math.max(len, entryBuf.length * 2)];
+            entry = new ByteStringView(entryBuf);
+            valueView = new ByteStringView(entryBuf);
+        }
+        try {
+            randomAccessFile.seek(idxStart(entryIdx));
+            randomAccessFile.readFully(entryBuf, 0, len);
+        } catch (IOException e) {
+            throw new IOError(e);
+        }
+        return entry.moveTo(0, len);
     }
 
     private ByteString seekAndRead(long entryIdx) {
@@ -236,15 +209,21 @@ public class FileIdxByteStringMultiMap {
         return entry.substring(valueStart, valueStart + valueLen);
     }
 
-    private int openAddressItem(long hash, int nHash) {
-        return (int) ((hash + nHash * nHash) & ((1 << bits) - 1));
-    }
-
     public int size() {
-        return bucketsFilled;
+        return idx.size;
     }
 
     public boolean isEmpty() {
         return size() == 0;
     }
-}
\ No newline at end of file
+
+    @Override
+    public void close() {
+        idx.close();
+        try {
+            randomAccessFile.close();
+        } catch (IOException e) {
+            throw new IOError(e);
+        }
+    }
+}
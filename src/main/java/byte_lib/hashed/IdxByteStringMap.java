@@ -1,24 +1,38 @@
 package byte_lib.hashed;
 
 import byte_lib.string.ByteString;
-import byte_lib.hashed.Util;
+import byte_lib.string.Ranges;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import static byte_lib.string.ByteString.encodeIdx;
-import static byte_lib.string.ByteString.idxLen;
-import static byte_lib.string.ByteString.idxStart;
+import java.io.File;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
-public class IdxByteStringMap {
+/**
+ * Read-only hash index over records of one chunk. Records are kept as
+ * {@link Ranges}, so neither record length nor chunk size is limited
+ * by the encodeIdx format, and the table only holds record ordinals.
+ * With parallelism above one the chunk is indexed by several threads,
+ * see {@link IdxScan}; the mappers and hasher must then be thread safe.
+ * The index can be saved with {@link #writeIdx} and mapped back with
+ * {@link #open} instead of indexing the chunk again.
+ */
+public class IdxByteStringMap implements AutoCloseable {
     private final static Logger LOG = LoggerFactory.getLogger(IdxByteStringMap.class);
     private final ByteStringHash hasher;
 
-    private long []table;
+    private int []table;
     private int bucketsFilled;
     private int bits;
+    private int partitionBits;
 
     private final ByteString chunk;
     private final ByteString itemSeparator;
+    private final Ranges records;
+    private final IdxFile idx;
+    private final long []keyRange = new long[2];
+    private final long []entryRange = new long[2];
 
     private final IdxMapper keyMapper;
     private final IdxMapper valueMapper;
@@ -27,34 +41,148 @@ public class IdxByteStringMap {
                             ByteString itemSeparator,
                             IdxMapper keyMapper,
                             IdxMapper valueMapper) {
+        this(chunk, itemSeparator, keyMapper, valueMapper, ByteStringHash.simple());
+    }
+
+    public IdxByteStringMap(ByteString chunk,
+                            ByteString itemSeparator,
+                            IdxMapper keyMapper,
+                            IdxMapper valueMapper,
+                            ByteStringHash hasher) {
+        this(chunk, itemSeparator, keyMapper, valueMapper, hasher, 1);
+    }
+
+    public IdxByteStringMap(ByteString chunk,
+                            ByteString itemSeparator,
+                            IdxMapper keyMapper,
+                            IdxMapper valueMapper,
+                            ByteStringHash hasher,
+                            int parallelism) {
+        if (parallelism <= 0) throw new IllegalArgumentException("parallelism");
 
         this.chunk = chunk;
         this.itemSeparator = itemSeparator;
         this.keyMapper = keyMapper;
         this.valueMapper = valueMapper;
+        this.hasher = hasher;
+        this.idx = null;
+
+        if (parallelism == 1) {
+            int records = chunk.howMuch(itemSeparator);
+
+            allocateCapacity(records);
+            this.records = new Ranges(chunk, records);
+
+            indexChunk();
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        try {
+            IdxScan scan = IdxScan.scan(chunk, itemSeparator, keyMapper, hasher, executor, parallelism);
+            allocateCapacity(scan.records.size());
+            partitionBits = IdxScan.partitionBits(parallelism, bits);
+            scan.bucket(partitionBits);
+            this.records = scan.records;
+            bucketsFilled = IdxScan.forEachPartition(executor, partitionBits,
+                    partition -> indexPartition(partition, scan));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private IdxByteStringMap(IdxFile idx,
+                             ByteString chunk,
+                             IdxMapper keyMapper,
+                             IdxMapper valueMapper,
+                             ByteStringHash hasher) {
+        this.idx = idx;
+        this.chunk = chunk;
+        this.itemSeparator = null;
+        this.keyMapper = keyMapper;
+        this.valueMapper = valueMapper;
+        this.hasher = hasher;
+        this.records = null;
+        bits = idx.bits;
+        partitionBits = idx.partitionBits;
+        bucketsFilled = idx.size;
+    }
 
-        int records = chunk.howMuch(itemSeparator);
+    /**
+     * Maps an index written by {@link #writeIdx}, see {@link IdxFile#open}.
+     */
+    public static IdxByteStringMap open(File idxFile,
+                                        ByteString chunk,
+                                        IdxMapper keyMapper,
+                                        IdxMapper valueMapper,
+                                        ByteStringHash hasher) {
+        return new IdxByteStringMap(IdxFile.open(idxFile, IdxFile.MAP, chunk.length()),
+                chunk, keyMapper, valueMapper, hasher);
+    }
 
-        allocateCapacity(records);
+    /**
+     * Writes the slots, then start and end of every record they point to.
+     */
+    public void writeIdx(File idxFile) {
+        int nSlots = 1 << bits;
+        IdxFile.write(idxFile, IdxFile.MAP, bits, partitionBits, bucketsFilled, chunk.length(),
+                nSlots + 2L * bucketsFilled, out -> {
+                    int record = 0;
+                    for (int item = 0; item < nSlots; item++) {
+                        out.writeLong(entry(item) == 0 ? 0 : ++record);
+                    }
+                    for (int item = 0; item < nSlots; item++) {
+                        int entry = entry(item);
+                        if (entry != 0) {
+                            out.writeLong(recordStart(entry - 1));
+                            out.writeLong(recordEnd(entry - 1));
+                        }
+                    }
+                });
+    }
 
-        hasher = ByteStringHash.simple();
+    /**
+     * See {@link IdxFile#verify}.
+     */
+    public boolean verify() {
+        return idx == null || idx.verify();
+    }
 
-        indexChunk();
+    @Override
+    public void close() {
+        if (idx != null) {
+            idx.close();
+        }
     }
 
     private void indexChunk() {
         chunk.iterateIdx(itemSeparator, this::put0);
     }
 
+    private int indexPartition(int partition, IdxScan scan) {
+        long[] keyRange = new long[2];
+        long[] entryRange = new long[2];
+        int filled = 0;
+        for (int i = scan.partitionStart(partition); i < scan.partitionStart(partition + 1); i++) {
+            int record = scan.ordinal(i);
+            keyMapper.mapRange(chunk, records.start(record), records.end(record), keyRange);
+            long keyStart = keyRange[0];
+            if (insert(record, keyStart, keyRange[1] - keyStart, scan.hashes[record], entryRange)) {
+                filled++;
+            }
+        }
+        return filled;
+    }
+
     private void allocateCapacity(int capacity) {
         capacity *= 4;
         bits = Util.nBits(capacity);
         if (bits < 3) bits = 3;
-        table = new long[1 << bits];
+        table = new int[1 << bits];
         LOG.info("Rehash {} {}", bucketsFilled, table.length);
         bucketsFilled = 0;
     }
-    
+
     public ByteString get(Object key) {
         if (isEmpty()) {
             return null;
@@ -62,82 +190,84 @@ public class IdxByteStringMap {
         ByteString keyStr = (ByteString) key;
         long keyLen = keyStr.length();
         long hash = hasher.hashCode(keyStr, 0L, keyLen);
-        for (int n = 0; n < table.length; n++) {
-            int item = openAddressItem(hash, n);
+        long []range = new long[2];
+        int base = IdxScan.partitionBase(hash, bits, partitionBits);
+        for (int n = 0; n < 1 << bits; n++) {
+            int item = IdxScan.openAddressItem(hash, base, n, bits, partitionBits);
 
-            long entry = table[item];
+            int entry = entry(item);
             if (entry == 0) {
                 return null;
             }
-            if (isChunkKey(entry - 1, keyStr)) {
-                return value(entry - 1);
+            if (isChunkKey(entry - 1, keyStr, 0, keyLen, range)) {
+                return value(entry - 1, range);
             }
         }
         return null;
     }
 
     private boolean put0(long start, long end) {
-        long keyIdx = keyMapper.map(chunk, start, end);
-        long keyStart = idxStart(keyIdx);
-        long keyLen = idxLen(keyIdx);
+        keyMapper.mapRange(chunk, start, end, keyRange);
+        long keyStart = keyRange[0];
+        long keyLen = keyRange[1] - keyStart;
         long hash = hasher.hashCode(chunk, keyStart, keyLen);
+        records.add(start, end);
+        if (insert(records.size() - 1, keyStart, keyLen, hash, entryRange)) {
+            bucketsFilled++;
+        }
+        return true;
+    }
+
+    /**
+     * Points the key's slot at the record, returns true for a new key.
+     */
+    private boolean insert(int record, long keyStart, long keyLen, long hash, long[] entryRange) {
+        int base = IdxScan.partitionBase(hash, bits, partitionBits);
         for (int n = 0; n < table.length; n++) {
-            int item = openAddressItem(hash, n);
+            int item = IdxScan.openAddressItem(hash, base, n, bits, partitionBits);
 
-            long entry = table[item];
+            int entry = table[item];
 
             if (entry == 0) {
-                table[item] = encodeIdx(start, end) + 1;
-                bucketsFilled++;
+                table[item] = record + 1;
                 return true;
             }
 
-            if (isChunkKey(entry - 1, chunk, keyStart, keyLen)) {
-                table[item] = encodeIdx(start, end) + 1;
-                return true;
+            if (isChunkKey(entry - 1, chunk, keyStart, keyLen, entryRange)) {
+                table[item] = record + 1;
+                return false;
             }
         }
-        return true;
+        return false;
     }
 
-    private boolean isChunkKey(long entryIdx, ByteString key2) {
-        return isChunkKey(entryIdx, key2, 0, key2.length());
+    private int entry(int item) {
+        return idx == null ? table[item] : (int) idx.get(item);
     }
 
-    private boolean isChunkKey(long entryIdx, ByteString key2, long key2Start, long key2Len) {
-        long entryStart = idxStart(entryIdx);
-        long entryLen = idxLen(entryIdx);
+    private long recordStart(int record) {
+        return idx == null ? records.start(record) : idx.get((1L << bits) + 2L * record);
+    }
+
+    private long recordEnd(int record) {
+        return idx == null ? records.end(record) : idx.get((1L << bits) + 2L * record + 1);
+    }
 
-        long keyIdx = keyMapper.map(chunk, entryStart, entryStart + entryLen);
-        long key1Start = idxStart(keyIdx);
-        long key1Len = idxLen(keyIdx);
+    private boolean isChunkKey(int record, ByteString key2, long key2Start, long key2Len, long[] range) {
+        keyMapper.mapRange(chunk, recordStart(record), recordEnd(record), range);
+        long key1Start = range[0];
+        long key1Len = range[1] - key1Start;
 
         if (key1Len != key2Len) {
             return false;
         }
 
-        for (long i = 0; i < key2Len; i++) {
-            if (chunk.byteAt(key1Start + i) != key2.byteAt(key2Start + i)) {
-                return false;
-            }
-        }
-
-        return true;
-    }
-
-    private ByteString value(long entryIdx) {
-        long entryStart = idxStart(entryIdx);
-        long entryLen = idxLen(entryIdx);
-
-        long idx = valueMapper.map(chunk, entryStart, entryStart + entryLen);
-        long valueStart = idxStart(idx);
-        long valueLen = idxLen(idx);
-
-        return chunk.substring(valueStart, valueStart + valueLen);
+        return chunk.regionMatches(key1Start, key2, key2Start, key2Len);
     }
 
-    private int openAddressItem(long hash, int nHash) {
-        return (int) ((hash + nHash * nHash) & ((1 << bits) - 1));
+    private ByteString value(int record, long[] range) {
+        valueMapper.mapRange(chunk, recordStart(record), recordEnd(record), range);
+        return chunk.substring(range[0], range[1]);
     }
 
     public int size() {
@@ -1,119 +1,308 @@
 package byte_lib.hashed;
 
 import byte_lib.string.ByteString;
+import byte_lib.string.SubstringIterator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.LongStream;
 
 import static byte_lib.string.ByteString.*;
-import static java.util.Arrays.stream;
 import static java.util.stream.Collectors.toList;
 
-public class IdxByteStringMultiMap {
+/**
+ * Read-only hash index gathering all records of one chunk per key,
+ * in chunk order. Records are laid out compressed sparse row style:
+ * one array holds the records of all keys back to back, and each slot
+ * of the table only holds the offset of its key's run. It is built in
+ * two passes, counting records per key, then placing them.
+ * With parallelism above one the chunk is indexed by several threads,
+ * see {@link IdxScan}; the mappers and hasher must then be thread safe.
+ * The index can be saved with {@link #writeIdx} and mapped back with
+ * {@link #open} instead of indexing the chunk again.
+ */
+public class IdxByteStringMultiMap implements AutoCloseable {
     private final static Logger LOG = LoggerFactory.getLogger(IdxByteStringMultiMap.class);
     private final ByteStringHash hasher;
 
-    private long [][]table;
-    private int []tableLen;
+    private int []offsets;
+    private long []values;
     private int bucketsFilled;
     private int bits;
+    private int partitionBits;
 
     private final ByteString chunk;
     private final ByteString itemSeparator;
 
     private final IdxMapper keyMapper;
     private final IdxMapper valueMapper;
+    private final IdxFile idx;
 
     public IdxByteStringMultiMap(ByteString chunk,
                                  ByteString itemSeparator,
                                  IdxMapper keyMapper,
                                  IdxMapper valueMapper) {
+        this(chunk, itemSeparator, keyMapper, valueMapper, ByteStringHash.simple());
+    }
+
+    public IdxByteStringMultiMap(ByteString chunk,
+                                 ByteString itemSeparator,
+                                 IdxMapper keyMapper,
+                                 IdxMapper valueMapper,
+                                 ByteStringHash hasher) {
+        this(chunk, itemSeparator, keyMapper, valueMapper, hasher, 1);
+    }
+
+    public IdxByteStringMultiMap(ByteString chunk,
+                                 ByteString itemSeparator,
+                                 IdxMapper keyMapper,
+                                 IdxMapper valueMapper,
+                                 ByteStringHash hasher,
+                                 int parallelism) {
+        if (parallelism <= 0) throw new IllegalArgumentException("parallelism");
 
         this.chunk = chunk;
         this.itemSeparator = itemSeparator;
         this.keyMapper = keyMapper;
         this.valueMapper = valueMapper;
+        this.hasher = hasher;
+        this.idx = null;
 
-        int records = chunk.howMuch(itemSeparator);
+        if (parallelism == 1) {
+            int records = chunk.howMuch(itemSeparator);
 
-        allocateCapacity(records);
+            allocateCapacity(records);
+            long[] recordIdx = new long[records];
+            int[] recordSlot = new int[records];
+            int[] counts = new int[1 << bits];
 
-        hasher = ByteStringHash.simple();
+            countChunk(recordIdx, recordSlot, counts);
+            placeRecords(recordIdx, recordSlot, counts);
+            return;
+        }
 
-        indexChunk();
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        try {
+            IdxScan scan = IdxScan.scan(chunk, itemSeparator, keyMapper, hasher, executor, parallelism);
+            int records = scan.records.size();
+            allocateCapacity(records);
+            partitionBits = IdxScan.partitionBits(parallelism, bits);
+            scan.bucket(partitionBits);
+            long[] recordIdx = new long[records];
+            for (int record = 0; record < records; record++) {
+                recordIdx[record] = encodeIdx(scan.records.start(record), scan.records.end(record));
+            }
+            int[] recordSlot = new int[records];
+            int[] counts = new int[1 << bits];
+            IdxScan.forEachPartition(executor, partitionBits,
+                    partition -> countPartition(partition, scan, recordIdx, recordSlot, counts));
+            placeRecords(recordIdx, recordSlot, counts);
+        } finally {
+            executor.shutdownNow();
+        }
     }
 
-    private void indexChunk() {
-        chunk.iterateIdx(itemSeparator, this::put0);
+    private IdxByteStringMultiMap(IdxFile idx,
+                                  ByteString chunk,
+                                  IdxMapper keyMapper,
+                                  IdxMapper valueMapper,
+                                  ByteStringHash hasher) {
+        this.idx = idx;
+        this.chunk = chunk;
+        this.itemSeparator = null;
+        this.keyMapper = keyMapper;
+        this.valueMapper = valueMapper;
+        this.hasher = hasher;
+        bits = idx.bits;
+        partitionBits = idx.partitionBits;
+        bucketsFilled = idx.size;
+    }
+
+    /**
+     * Maps an index written by {@link #writeIdx}, see {@link IdxFile#open}.
+     */
+    public static IdxByteStringMultiMap open(File idxFile,
+                                             ByteString chunk,
+                                             IdxMapper keyMapper,
+                                             IdxMapper valueMapper,
+                                             ByteStringHash hasher) {
+        return new IdxByteStringMultiMap(IdxFile.open(idxFile, IdxFile.MULTI_MAP, chunk.length()),
+                chunk, keyMapper, valueMapper, hasher);
+    }
+
+    /**
+     * Writes the same layout as kept in memory: the offset of every slot's
+     * records, one more for the end, then the records of all slots.
+     */
+    public void writeIdx(File idxFile) {
+        int nSlots = 1 << bits;
+        IdxFile.write(idxFile, IdxFile.MULTI_MAP, bits, partitionBits, bucketsFilled, chunk.length(),
+                nSlots + 1L + bucketsFilled, out -> {
+                    for (int item = 0; item <= nSlots; item++) {
+                        out.writeLong(offset(item));
+                    }
+                    for (int i = 0; i < bucketsFilled; i++) {
+                        out.writeLong(record(i));
+                    }
+                });
+    }
+
+    /**
+     * See {@link IdxFile#verify}.
+     */
+    public boolean verify() {
+        return idx == null || idx.verify();
+    }
+
+    @Override
+    public void close() {
+        if (idx != null) {
+            idx.close();
+        }
+    }
+
+    /**
+     * First pass: finds the slot of every record and counts records per slot.
+     * Until {@link #placeRecords} offsets hold the first record of each slot.
+     */
+    private void countChunk(long[] recordIdx, int[] recordSlot, int[] counts) {
+        int[] record = new int[1];
+        chunk.iterateIdx(itemSeparator, (start, end) -> {
+            long keyIdx = keyMapper.map(chunk, start, end);
+            long keyStart = idxStart(keyIdx);
+            long keyLen = idxLen(keyIdx);
+            long hash = hasher.hashCode(chunk, keyStart, keyLen);
+            int r = record[0]++;
+            recordIdx[r] = encodeIdx(start, end);
+            recordSlot[r] = countRecord(r, keyStart, keyLen, hash, recordIdx, counts);
+            return true;
+        });
+    }
+
+    private int countPartition(int partition, IdxScan scan,
+                               long[] recordIdx, int[] recordSlot, int[] counts) {
+        long[] keyRange = new long[2];
+        for (int i = scan.partitionStart(partition); i < scan.partitionStart(partition + 1); i++) {
+            int record = scan.ordinal(i);
+            long hash = scan.hashes[record];
+            keyMapper.mapRange(chunk, scan.records.start(record), scan.records.end(record), keyRange);
+            long keyStart = keyRange[0];
+            recordSlot[record] = countRecord(record, keyStart, keyRange[1] - keyStart, hash,
+                    recordIdx, counts);
+        }
+        return 0;
+    }
+
+    private int countRecord(int record, long keyStart, long keyLen, long hash,
+                            long[] recordIdx, int[] counts) {
+        int base = IdxScan.partitionBase(hash, bits, partitionBits);
+        for (int n = 0; n < counts.length; n++) {
+            int item = IdxScan.openAddressItem(hash, base, n, bits, partitionBits);
+
+            if (counts[item] == 0) {
+                offsets[item] = record;
+                counts[item] = 1;
+                return item;
+            }
+
+            if (isChunkKey(recordIdx[offsets[item]], chunk, keyStart, keyLen)) {
+                counts[item]++;
+                return item;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Second pass: turns counts into offsets and places records in chunk order.
+     */
+    private void placeRecords(long[] recordIdx, int[] recordSlot, int[] counts) {
+        int offset = 0;
+        for (int item = 0; item < counts.length; item++) {
+            offsets[item] = offset;
+            offset += counts[item];
+        }
+        offsets[counts.length] = offset;
+        values = new long[offset];
+        for (int record = 0; record < recordIdx.length; record++) {
+            int item = recordSlot[record];
+            if (item >= 0) {
+                values[offsets[item + 1] - counts[item]--] = recordIdx[record];
+            }
+        }
+        bucketsFilled = offset;
     }
 
     private void allocateCapacity(int capacity) {
         capacity *= 4;
         bits = Util.nBits(capacity);
         if (bits < 3) bits = 3;
-        table = new long[1 << bits][];
-        tableLen = new int[1 << bits];
-        LOG.info("Rehash {} {}", bucketsFilled, table.length);
+        offsets = new int[(1 << bits) + 1];
+        LOG.info("Rehash {} {}", bucketsFilled, 1 << bits);
         bucketsFilled = 0;
     }
-    
+
     public List<ByteString> get(Object key) {
-        if (isEmpty()) {
+        int item = find((ByteString) key);
+        if (item < 0) {
             return Collections.emptyList();
         }
-        ByteString keyStr = (ByteString) key;
-        long keyLen = keyStr.length();
-        long hash = hasher.hashCode(keyStr, 0L, keyLen);
-        for (int n = 0; n < table.length; n++) {
-            int item = openAddressItem(hash, n);
-
-            long []entry = table[item];
-            if (entry == null) {
-                return Collections.emptyList();
-            }
-            if (isChunkKey(entry[0], keyStr)) {
-                return stream(entry, 0, tableLen[item])
-                        .mapToObj(this::value)
-                        .collect(toList());
+        return LongStream.range(offset(item), offset(item + 1))
+                .map(this::record)
+                .mapToObj(this::value)
+                .collect(toList());
+    }
+
+    /**
+     * Passes the chunk offsets of the key's values to it, in chunk order,
+     * until it returns false. Unlike {@link #get} it allocates nothing.
+     */
+    public void forEachValue(ByteString key, SubstringIterator it) {
+        int item = find(key);
+        if (item < 0) {
+            return;
+        }
+        long to = offset(item + 1);
+        for (long i = offset(item); i < to; i++) {
+            long entryIdx = record(i);
+            long entryStart = idxStart(entryIdx);
+            long valueIdx = valueMapper.map(chunk, entryStart, entryStart + idxLen(entryIdx));
+            if (!it.substring(idxStart(valueIdx), idxEnd(valueIdx))) {
+                return;
             }
         }
-        return Collections.emptyList();
     }
 
-    private boolean put0(long start, long end) {
-        long keyIdx = keyMapper.map(chunk, start, end);
-        long keyStart = idxStart(keyIdx);
-        long keyLen = idxLen(keyIdx);
-        long hash = hasher.hashCode(chunk, keyStart, keyLen);
-        for (int n = 0; n < table.length; n++) {
-            int item = openAddressItem(hash, n);
-
-            long []entry = table[item];
-
-            if (entry == null) {
-                table[item] = new long[1];
-                addTable(item, encodeIdx(start, end));
-                bucketsFilled++;
-                return true;
+    private int find(ByteString key) {
+        if (isEmpty()) {
+            return -1;
+        }
+        long hash = hasher.hashCode(key, 0L, key.length());
+        int base = IdxScan.partitionBase(hash, bits, partitionBits);
+        for (int n = 0; n < 1 << bits; n++) {
+            int item = IdxScan.openAddressItem(hash, base, n, bits, partitionBits);
+
+            long from = offset(item);
+            if (from == offset(item + 1)) {
+                return -1;
             }
-
-            if (isChunkKey(entry[0], chunk, keyStart, keyLen)) {
-                addTable(item, encodeIdx(start, end));
-                bucketsFilled++;
-                return true;
+            if (isChunkKey(record(from), key)) {
+                return item;
             }
         }
-        return true;
+        return -1;
     }
 
-    private void addTable(int item, long v) {
-        int len = tableLen[item];
-        if (len == table[item].length) {
-            table[item] = Arrays.copyOf(table[item], table[item].length * 2);
-        }
-        table[item][len] = v;
-        tableLen[item]++;
+    private long offset(int item) {
+        return idx == null ? offsets[item] : idx.get(item);
+    }
+
+    private long record(long i) {
+        return idx == null ? values[(int) i] : idx.get((1L << bits) + 1 + i);
     }
 
     private boolean isChunkKey(long entryIdx, ByteString key2) {
@@ -132,13 +321,7 @@ public class IdxByteStringMultiMap {
             return false;
         }
 
-        for (long i = 0; i < key2Len; i++) {
-            if (chunk.byteAt(key1Start + i) != key2.byteAt(key2Start + i)) {
-                return false;
-            }
-        }
-
-        return true;
+        return chunk.regionMatches(key1Start, key2, key2Start, key2Len);
     }
 
     private ByteString value(long entryIdx) {
@@ -152,10 +335,6 @@ public class IdxByteStringMultiMap {
         return chunk.substring(valueStart, valueStart + valueLen);
     }
 
-    private int openAddressItem(long hash, int nHash) {
-        return (int) ((hash + nHash * nHash) & ((1 << bits) - 1));
-    }
-
     public int size() {
         return bucketsFilled;
     }
@@ -163,4 +342,4 @@ public class IdxByteStringMultiMap {
     public boolean isEmpty() {
         return size() == 0;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,156 @@
+package byte_lib.hashed;
+
+import byte_lib.buf.ByteBuf;
+import byte_lib.buf.MappedByteBuf;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Flat on-disk index of {@link IdxByteStringMap} and {@link IdxByteStringMultiMap}:
+ * a header followed by one contiguous table of big-endian longs, which is
+ * memory mapped back without reading it. The header keeps the table
+ * geometry, the length of the indexed chunk and a CRC32 of the table,
+ * checked only by {@link #verify}. Neither the hasher nor the mappers are
+ * recorded, so an index has to be reopened with the ones it was built with.
+ */
+class IdxFile implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(IdxFile.class);
+
+    static final long MAGIC = 0x4259544549445846L;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 64;
+    static final int MAP = 1;
+    static final int MULTI_MAP = 2;
+    private static final int COPY_SIZE = 64 * 1024;
+
+    final int bits;
+    final int partitionBits;
+    final int size;
+    private final long tableLongs;
+    private final long checksum;
+    private final ByteBuf buf;
+
+    private IdxFile(int bits, int partitionBits, int size, long tableLongs, long checksum, ByteBuf buf) {
+        this.bits = bits;
+        this.partitionBits = partitionBits;
+        this.size = size;
+        this.tableLongs = tableLongs;
+        this.checksum = checksum;
+        this.buf = buf;
+    }
+
+    interface TableWriter {
+        void write(DataOutput out) throws IOException;
+    }
+
+    static void write(File file, int kind, int bits, int partitionBits, int size,
+                      long chunkLength, long tableLongs, TableWriter table) {
+        LOG.info("Writing " + file);
+        CRC32 crc = new CRC32();
+        try (FileOutputStream fileOut = new FileOutputStream(file);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                     new CheckedOutputStream(fileOut, crc), COPY_SIZE))) {
+            fileOut.write(new byte[HEADER_SIZE]);
+            table.write(out);
+        } catch (IOException e) {
+            throw new IOError(e);
+        }
+        if (file.length() != HEADER_SIZE + tableLongs * 8) {
+            throw new IllegalStateException("table size");
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.writeLong(MAGIC);
+            raf.writeInt(VERSION);
+            raf.writeInt(kind);
+            raf.writeInt(bits);
+            raf.writeInt(partitionBits);
+            raf.writeInt(size);
+            raf.writeLong(chunkLength);
+            raf.writeLong(tableLongs);
+            raf.writeLong(crc.getValue());
+        } catch (IOException e) {
+            throw new IOError(e);
+        }
+    }
+
+    /**
+     * Maps an index written for a chunk of the same length, without reading
+     * the table. Checks the header geometry and the file length, in O(1);
+     * the table itself is only checked by {@link #verify}.
+     */
+    static IdxFile open(File file, int kind, long chunkLength) {
+        int bits;
+        int partitionBits;
+        int size;
+        long tableLongs;
+        long checksum;
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file), HEADER_SIZE))) {
+            if (in.readLong() != MAGIC) {
+                throw new IOException("Not an index file " + file);
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported index version " + version);
+            }
+            if (in.readInt() != kind) {
+                throw new IOException("Wrong index kind " + file);
+            }
+            bits = in.readInt();
+            partitionBits = in.readInt();
+            size = in.readInt();
+            if (in.readLong() != chunkLength) {
+                throw new IOException("Index " + file + " is built for another chunk");
+            }
+            tableLongs = in.readLong();
+            checksum = in.readLong();
+            if (bits < 3 || bits > 30 || partitionBits < 0 || partitionBits > bits - 3
+                    || size < 0 || tableLongs != tableLongs(kind, bits, size)) {
+                throw new IOException("Corrupt index header " + file);
+            }
+        } catch (IOException e) {
+            throw new IOError(e);
+        }
+        if (file.length() != HEADER_SIZE + tableLongs * 8) {
+            throw new IOError(new IOException("Truncated index file " + file));
+        }
+        LOG.info("Mapping " + file);
+        return new IdxFile(bits, partitionBits, size, tableLongs, checksum, MappedByteBuf.map(file));
+    }
+
+    /**
+     * Slots then two longs per record for a map, slot offsets, the end offset
+     * then one long per record for a multimap.
+     */
+    private static long tableLongs(int kind, int bits, int size) {
+        return kind == MAP ? (1L << bits) + 2L * size : (1L << bits) + 1 + size;
+    }
+
+    long get(long idx) {
+        return buf.getLong(HEADER_SIZE + (idx << 3));
+    }
+
+    /**
+     * Reads the whole table and compares it with the header checksum.
+     */
+    boolean verify() {
+        CRC32 crc = new CRC32();
+        ByteBuf dup = buf.duplicate().position(HEADER_SIZE);
+        byte[] bytes = new byte[COPY_SIZE];
+        for (long n = tableLongs * 8; n > 0; n -= bytes.length) {
+            int sz = (int) Math.min(bytes.length, n);
+            dup.get(bytes, 0, sz);
+            crc.update(bytes, 0, sz);
+        }
+        return crc.getValue() == checksum;
+    }
+
+    @Override
+    public void close() {
+        buf.free();
+    }
+}
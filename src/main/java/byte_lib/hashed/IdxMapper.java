@@ -3,44 +3,78 @@ package byte_lib.hashed;
 import byte_lib.string.ByteString;
 
 import static byte_lib.string.ByteString.SEPARATOR;
+import static byte_lib.string.ByteString.encodeIdx;
 
 public interface IdxMapper {
-    long map(ByteString str, long start, long end);
+    /**
+     * Stores the mapped range start and end to range[0] and range[1].
+     */
+    void mapRange(ByteString str, long start, long end, long[] range);
+
+    /**
+     * The mapped range packed by encodeIdx, so longer ranges are truncated.
+     * Mappers built by the field factories override it to avoid the range array.
+     */
+    default long map(ByteString str, long start, long end) {
+        long[] range = MapperRange.RANGE.get();
+        mapRange(str, start, end, range);
+        return encodeIdx(range[0], range[1]);
+    }
 
     static long firstField(ByteString str, long start, long end) {
         return str.fieldsIdx(SEPARATOR, start, end, 0, 0);
     }
 
+    static void firstField(ByteString str, long start, long end, long[] range) {
+        str.fieldsRange(SEPARATOR, start, end, 0, 0, range);
+    }
+
     static long secondField(ByteString str, long start, long end) {
         return str.fieldsIdx(SEPARATOR, start, end, 1, 1);
     }
 
+    static void secondField(ByteString str, long start, long end, long[] range) {
+        str.fieldsRange(SEPARATOR, start, end, 1, 1, range);
+    }
+
     static long thirdField(ByteString str, long start, long end) {
         return str.fieldsIdx(SEPARATOR, start, end, 2,2);
     }
 
+    static void thirdField(ByteString str, long start, long end, long[] range) {
+        str.fieldsRange(SEPARATOR, start, end, 2, 2, range);
+    }
+
     static long firstTwoFields(ByteString str, long start, long end) {
         return str.fieldsIdx(SEPARATOR, start, end, 0, 1);
     }
 
+    static void firstTwoFields(ByteString str, long start, long end, long[] range) {
+        str.fieldsRange(SEPARATOR, start, end, 0, 1, range);
+    }
+
     static long firstThreeFields(ByteString str, long start, long end) {
         return str.fieldsIdx(SEPARATOR, start, end, 0, 2);
     }
 
+    static void firstThreeFields(ByteString str, long start, long end, long[] range) {
+        str.fieldsRange(SEPARATOR, start, end, 0, 2, range);
+    }
+
     static IdxMapper field(int nField) {
-        return (str, start, end) -> str.fieldsIdx(SEPARATOR, start, end, nField, nField);
+        return new FieldsMapper(SEPARATOR, nField, nField);
     }
 
     static IdxMapper fields(int fieldStart, int fieldEnd) {
-        return (str, start, end) -> str.fieldsIdx(SEPARATOR, start, end, fieldStart, fieldEnd);
+        return new FieldsMapper(SEPARATOR, fieldStart, fieldEnd);
     }
 
     static IdxMapper field(ByteString separator, int nField) {
-        return (str, start, end) -> str.fieldsIdx(separator, start, end, nField, nField);
+        return new FieldsMapper(separator, nField, nField);
     }
 
     static IdxMapper fields(ByteString separator, int fieldStart, int fieldEnd) {
-        return (str, start, end) -> str.fieldsIdx(separator, start, end, fieldStart, fieldEnd);
+        return new FieldsMapper(separator, fieldStart, fieldEnd);
     }
 
 }
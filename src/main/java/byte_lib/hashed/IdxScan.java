@@ -0,0 +1,177 @@
+package byte_lib.hashed;
+
+import byte_lib.string.ByteString;
+import byte_lib.string.Ranges;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Parallel index build support. A chunk is cut into pieces at separator
+ * boundaries and each piece scanned on its own thread for records and
+ * their key hashes, which are then joined in chunk order. The table is
+ * split into 2^partitionBits contiguous sub-tables selected by the hash,
+ * so every partition can be filled by one thread, in record order,
+ * without locks and with the same result as a sequential build.
+ */
+class IdxScan {
+    final Ranges records;
+    final long[] hashes;
+    private int[] partitionStarts;
+    private int[] ordinals;
+
+    private IdxScan(Ranges records, long[] hashes) {
+        this.records = records;
+        this.hashes = hashes;
+    }
+
+    static IdxScan scan(ByteString chunk, ByteString separator, IdxMapper keyMapper,
+                        ByteStringHash hasher, ExecutorService executor, int nPieces) {
+        long len = chunk.length();
+        long[] cuts = new long[nPieces + 1];
+        cuts[nPieces] = len;
+        for (int i = 1; i < nPieces; i++) {
+            long from = Math.max(cuts[i - 1], len / nPieces * i);
+            long idx = from < len ? chunk.indexOf(separator, from, len) : -1;
+            cuts[i] = idx == -1 ? len : idx + separator.length();
+        }
+
+        List<Future<IdxScan>> pieces = new ArrayList<>();
+        for (int i = 0; i < nPieces; i++) {
+            long start = cuts[i];
+            long end = cuts[i + 1];
+            pieces.add(executor.submit(() -> scanPiece(chunk, separator, keyMapper, hasher, start, end)));
+        }
+
+        int total = 0;
+        List<IdxScan> scans = new ArrayList<>();
+        for (Future<IdxScan> piece : pieces) {
+            IdxScan scan = await(piece);
+            scans.add(scan);
+            total += scan.records.size();
+        }
+
+        Ranges records = new Ranges(chunk, total);
+        long[] hashes = new long[total];
+        for (IdxScan scan : scans) {
+            System.arraycopy(scan.hashes, 0, hashes, records.size(), scan.records.size());
+            for (int i = 0; i < scan.records.size(); i++) {
+                records.add(scan.records.start(i), scan.records.end(i));
+            }
+        }
+        return new IdxScan(records, hashes);
+    }
+
+    private static IdxScan scanPiece(ByteString chunk, ByteString separator, IdxMapper keyMapper,
+                                     ByteStringHash hasher, long start, long end) {
+        Ranges records = new Ranges(chunk, 16);
+        long[][] hashes = {new long[16]};
+        long[] keyRange = new long[2];
+        chunk.iterateIdx(separator, start, end, (s, e) -> {
+            int n = records.size();
+            if (n == hashes[0].length) {
+                hashes[0] = Arrays.copyOf(hashes[0], n * 2);
+            }
+            keyMapper.mapRange(chunk, s, e, keyRange);
+            hashes[0][n] = hasher.hashCode(chunk, keyRange[0], keyRange[1] - keyRange[0]);
+            records.add(s, e);
+            return true;
+        });
+        return new IdxScan(records, hashes[0]);
+    }
+
+    /**
+     * Enough partitions to keep parallelism threads busy,
+     * leaving at least 8 slots to each.
+     */
+    static int partitionBits(int parallelism, int bits) {
+        return Math.max(0, Math.min(Util.nBits(parallelism - 1), bits - 3));
+    }
+
+    static int partition(long hash, int partitionBits) {
+        if (partitionBits == 0) {
+            return 0;
+        }
+        return (int) ((hash * 0x9E3779B97F4A7C15L) >>> (64 - partitionBits));
+    }
+
+    /**
+     * First slot of the hash's partition in a table of 2^bits slots.
+     */
+    static int partitionBase(long hash, int bits, int partitionBits) {
+        return partition(hash, partitionBits) << (bits - partitionBits);
+    }
+
+    /**
+     * Quadratic probe n of the hash, kept within its partition.
+     */
+    static int openAddressItem(long hash, int base, int nHash, int bits, int partitionBits) {
+        return base | (int) ((hash + nHash * nHash) & ((1 << (bits - partitionBits)) - 1));
+    }
+
+    /**
+     * Counting sorts record ordinals by partition, keeping record order
+     * within each, so a partition's thread only visits its own records.
+     */
+    void bucket(int partitionBits) {
+        int nPartitions = 1 << partitionBits;
+        partitionStarts = new int[nPartitions + 1];
+        for (long hash : hashes) {
+            partitionStarts[partition(hash, partitionBits) + 1]++;
+        }
+        for (int p = 0; p < nPartitions; p++) {
+            partitionStarts[p + 1] += partitionStarts[p];
+        }
+        int[] next = Arrays.copyOf(partitionStarts, nPartitions);
+        ordinals = new int[hashes.length];
+        for (int record = 0; record < hashes.length; record++) {
+            ordinals[next[partition(hashes[record], partitionBits)]++] = record;
+        }
+    }
+
+    /**
+     * Index of the partition's first ordinal, after {@link #bucket}.
+     */
+    int partitionStart(int partition) {
+        return partitionStarts[partition];
+    }
+
+    int ordinal(int i) {
+        return ordinals[i];
+    }
+
+    /**
+     * Runs fill for every partition and returns the sum of the results.
+     */
+    static int forEachPartition(ExecutorService executor, int partitionBits, IntUnaryOperator fill) {
+        List<Future<Integer>> futures = new ArrayList<>();
+        for (int p = 0; p < 1 << partitionBits; p++) {
+            int partition = p;
+            futures.add(executor.submit(() -> fill.applyAsInt(partition)));
+        }
+        int sum = 0;
+        for (Future<Integer> future : futures) {
+            sum += await(future);
+        }
+        return sum;
+    }
+
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+}
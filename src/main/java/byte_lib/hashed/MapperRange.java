@@ -0,0 +1,9 @@
+package byte_lib.hashed;
+
+/**
+ * Range array of {@link IdxMapper#map}, kept per thread so that mappers
+ * only implementing mapRange still map without allocating.
+ */
+class MapperRange {
+    static final ThreadLocal<long[]> RANGE = ThreadLocal.withInitial(() -> new long[2]);
+}
@@ -18,9 +18,14 @@ class MemTableByteStringFilter implements ByteStringFilter {
     }
 
     MemTableByteStringFilter(int capacity) {
+        this(capacity, ByteStringHash.simple());
+    }
+
+    MemTableByteStringFilter(int capacity, ByteStringHash hasher) {
         if (capacity <= 0) throw new IllegalArgumentException("capacity");
+        if (hasher == null) throw new IllegalArgumentException("hasher");
         allocateCapacity(capacity);
-        hasher = ByteStringHash.simple();
+        this.hasher = hasher;
     }
 
     private void allocateCapacity(int capacity) {
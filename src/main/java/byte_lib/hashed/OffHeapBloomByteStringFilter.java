@@ -0,0 +1,201 @@
+package byte_lib.hashed;
+
+import byte_lib.buf.BigByteBuf;
+import byte_lib.buf.ByteBuf;
+import byte_lib.buf.MappedByteBuf;
+import byte_lib.string.ByteString;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * Bloom filter with its bits in a {@link ByteBuf}, either off-heap memory
+ * or a memory mapped file, so it is not bounded by Java array sizes.
+ * A mapped filter is persistent: {@link #open} maps an existing file
+ * without reading it. The file starts with a small header keeping
+ * the size and number of hashes; the hasher itself is not recorded,
+ * so a file has to be reopened with the hasher it was built with.
+ */
+public class OffHeapBloomByteStringFilter implements ByteStringFilter, AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(OffHeapBloomByteStringFilter.class);
+
+    public static final long MAGIC = 0x42594C4246494C54L;
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 64;
+    public static final int EMPTY_OFFSET = 20;
+    public static final int MAX_SIZE_DEGREE = 44;
+    private static final int ZERO_FILL_SIZE = 64 * 1024;
+
+    private final ByteBuf buf;
+    private final long base;
+    private final int nHashes;
+    private final long mask;
+    private final ByteStringHash hasher;
+    private boolean empty;
+
+    private OffHeapBloomByteStringFilter(ByteBuf buf, long base, int sz2degree,
+                                         int nHashes, ByteStringHash hasher, boolean empty) {
+        if (hasher == null) throw new IllegalArgumentException("hasher");
+        this.buf = buf;
+        this.base = base;
+        this.nHashes = nHashes;
+        this.mask = (1L << sz2degree) - 1;
+        this.hasher = hasher;
+        this.empty = empty;
+    }
+
+    public static OffHeapBloomByteStringFilter allocate(int sz2degree, int nHashes) {
+        return allocate(sz2degree, nHashes, ByteStringHash.xx());
+    }
+
+    public static OffHeapBloomByteStringFilter allocate(int sz2degree, int nHashes, ByteStringHash hasher) {
+        sz2degree = checkSize(sz2degree);
+        OffHeapBloomByteStringFilter filter = new OffHeapBloomByteStringFilter(
+                new BigByteBuf(bytes(sz2degree)), 0, sz2degree, nHashes, hasher, true);
+        filter.zeroBits();
+        return filter;
+    }
+
+    public static OffHeapBloomByteStringFilter create(File file, int sz2degree, int nHashes) {
+        return create(file, sz2degree, nHashes, ByteStringHash.xx());
+    }
+
+    public static OffHeapBloomByteStringFilter create(File file, int sz2degree, int nHashes,
+                                                      ByteStringHash hasher) {
+        sz2degree = checkSize(sz2degree);
+        long size = HEADER_SIZE + bytes(sz2degree);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(0);
+            raf.setLength(size);
+            raf.writeLong(MAGIC);
+            raf.writeInt(VERSION);
+            raf.writeInt(sz2degree);
+            raf.writeInt(nHashes);
+            raf.writeByte(1);
+        } catch (IOException e) {
+            throw new IOError(e);
+        }
+        LOG.info("Created {} bloom filter of 2^{} bits", file, sz2degree);
+        return new OffHeapBloomByteStringFilter(MappedByteBuf.map(file, MapMode.READ_WRITE, size),
+                HEADER_SIZE, sz2degree, nHashes, hasher, true);
+    }
+
+    public static OffHeapBloomByteStringFilter open(File file) {
+        return open(file, ByteStringHash.xx());
+    }
+
+    public static OffHeapBloomByteStringFilter open(File file, ByteStringHash hasher) {
+        int sz2degree;
+        int nHashes;
+        boolean empty;
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file), HEADER_SIZE))) {
+            if (in.readLong() != MAGIC) {
+                throw new IOException("Not a bloom filter file " + file);
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported bloom filter version " + version);
+            }
+            sz2degree = in.readInt();
+            nHashes = in.readInt();
+            empty = in.readByte() != 0;
+        } catch (IOException e) {
+            throw new IOError(e);
+        }
+        long size = HEADER_SIZE + bytes(sz2degree);
+        if (file.length() != size) {
+            throw new IOError(new IOException("Truncated bloom filter file " + file));
+        }
+        return new OffHeapBloomByteStringFilter(MappedByteBuf.map(file, MapMode.READ_WRITE, size),
+                HEADER_SIZE, sz2degree, nHashes, hasher, empty);
+    }
+
+    private static int checkSize(int sz2degree) {
+        if (sz2degree > MAX_SIZE_DEGREE) throw new IllegalArgumentException("sz2degree");
+        return Math.max(sz2degree, 3);
+    }
+
+    private static long bytes(int sz2degree) {
+        return 1L << (sz2degree - 3);
+    }
+
+    @Override
+    public boolean contains(ByteString str, ByteString... other) {
+        long h1 = hasher.hashCode(str, other);
+        long h2 = (h1 >>> 32) | 1;
+        for (int i = 0; i < nHashes; i++) {
+            long bit = (h1 + i * h2) & mask;
+            if ((buf.get(base + (bit >>> 3)) & (1 << (bit & 7))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean add(ByteString str, ByteString... other) {
+        long h1 = hasher.hashCode(str, other);
+        long h2 = (h1 >>> 32) | 1;
+        boolean added = false;
+        for (int i = 0; i < nHashes; i++) {
+            long bit = (h1 + i * h2) & mask;
+            long idx = base + (bit >>> 3);
+            byte val = buf.get(idx);
+            int msk = 1 << (bit & 7);
+            if ((val & msk) == 0) {
+                buf.put(idx, (byte) (val | msk));
+                added = true;
+            }
+        }
+        if (empty) {
+            setEmpty(false);
+        }
+        return added;
+    }
+
+    private void setEmpty(boolean empty) {
+        this.empty = empty;
+        if (base > 0) {
+            buf.put(EMPTY_OFFSET, (byte) (empty ? 1 : 0));
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return empty;
+    }
+
+    @Override
+    public void clear() {
+        zeroBits();
+        setEmpty(true);
+    }
+
+    private void zeroBits() {
+        byte[] zeros = new byte[ZERO_FILL_SIZE];
+        long end = base + mask / 8 + 1;
+        buf.position(base);
+        for (long p = base; p < end; p += zeros.length) {
+            buf.put(zeros, 0, (int) Math.min(zeros.length, end - p));
+        }
+        buf.position(0);
+    }
+
+    /**
+     * Flushes a mapped filter to its file.
+     */
+    public void force() {
+        if (buf instanceof MappedByteBuf) {
+            ((MappedByteBuf) buf).force();
+        }
+    }
+
+    @Override
+    public void close() {
+        force();
+        buf.free();
+    }
+}
@@ -96,19 +96,8 @@ public class OneChunkByteStringMap {
             return false;
         }
 
-        for (long i = 0; i < keyLen; i++) {
-            if (chunk.byteAt(key1 + i) != key2.byteAt(start + i)) {
-                return false;
-            }
-        }
-
-        for (long i = 0; i < keyValueSeparator.length(); i++) {
-            if (chunk.byteAt(key1 + i + keyLen) != keyValueSeparator.byteAt(i)) {
-                return false;
-            }
-        }
-
-        return true;
+        return chunk.regionMatches(key1, key2, start, keyLen) &&
+                chunk.regionMatches(key1 + keyLen, keyValueSeparator, 0, keyValueSeparator.length());
     }
 
     private long keyLen(long addr) {
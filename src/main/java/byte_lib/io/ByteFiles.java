@@ -3,7 +3,7 @@ package byte_lib.io;
 import byte_lib.hashed.ByteStringMap;
 import byte_lib.string.ByteString;
 import byte_lib.buf.ByteBuf;
-import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import byte_lib.buf.MappedByteBuf;
 import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
 import org.iq80.snappy.SnappyFramedInputStream;
 import org.iq80.snappy.SnappyFramedOutputStream;
@@ -24,21 +24,52 @@ public class ByteFiles {
     }
 
     public static ByteString readAll(File file) {
-        long nBytes;
         try (ByteStringInputStream in = inputStream(file)) {
-            nBytes = in.countBytes();
+            ByteBuf buf = isArchived(file.getPath())
+                    ? in.readAllGrowing(sizeHint(file))
+                    : in.readAll(file.length());
+            return ByteString.bb(buf);
         } catch (IOException ex) {
             throw new IOError(ex);
         }
+    }
 
-        try (ByteStringInputStream in = inputStream(file)) {
-            ByteBuf buf = in.readAll(nBytes);
-            return ByteString.bb(buf);
+    static long sizeHint(File file) {
+        long compressed = file.length();
+        if (!file.getName().endsWith(".gz") || compressed < 18) {
+            return compressed;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            raf.seek(compressed - 4);
+            long isize = Integer.reverseBytes(raf.readInt()) & 0xFFFFFFFFL;
+            while (isize < compressed) {
+                isize += 1L << 32;
+            }
+            return isize;
         } catch (IOException ex) {
             throw new IOError(ex);
         }
     }
 
+    public static ByteString map(String path) {
+        return map(new File(path));
+    }
+
+    public static ByteString map(File file) {
+        if (isArchived(file.getPath())) {
+            throw new IllegalArgumentException("can't map archived file " + file);
+        }
+        return ByteString.bb(MappedByteBuf.map(file));
+    }
+
+    public static ByteString load(String path) {
+        return load(new File(path));
+    }
+
+    public static ByteString load(File file) {
+        return isArchived(file.getPath()) ? readAll(file) : map(file);
+    }
+
     public static void readAllLines(File file, Consumer<ByteString> it) {
         ByteString content = readAll(file);
         content.iterate(NEW_LINE, it::accept);
@@ -82,7 +113,7 @@ public class ByteFiles {
             if (file.getName().endsWith(".gz")) {
                 in = new GZIPInputStream(in);
             } else if (file.getName().endsWith(".bz2")) {
-                in = new BZip2CompressorInputStream(in, true);
+                in = new ParallelBZip2InputStream(in);
             } else if (file.getName().endsWith(".snappy")) {
                 in = new SnappyFramedInputStream(in, true);
             }
@@ -107,6 +138,10 @@ public class ByteFiles {
         return path;
     }
 
+    public static boolean isArchived(String path) {
+        return !nonArchivedName(path).equals(path);
+    }
+
     public static void writeMap(File file, ByteStringMap<ByteString> map) {
         try (PrintStream out = printStream(file)) {
             map.forEach((lang, obj) -> {
@@ -1,6 +1,7 @@
 package byte_lib.io;
 
 import byte_lib.buf.ByteBuf;
+import byte_lib.buf.ChunkedByteBuf;
 import byte_lib.string.ByteString;
 
 import java.io.*;
@@ -112,14 +113,11 @@ public class ByteStringInputStream extends InputStream implements Closeable {
     public int read() throws IOException {
         while (!done) {
             if (ptr < bufSz) {
-                return buf[ptr++];
+                return buf[ptr++] & 0xFF;
             }
 
             if (eof) {
                 done = true;
-                if (ptr < bufSz) {
-                    return buf[ptr++];
-                }
                 return -1;
             }
 
@@ -131,6 +129,35 @@ public class ByteStringInputStream extends InputStream implements Closeable {
         return -1;
     }
 
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (ptr < bufSz) {
+            int n = Math.min(len, bufSz - ptr);
+            System.arraycopy(buf, ptr, b, off, n);
+            ptr += n;
+            return n;
+        }
+        if (eof) {
+            done = true;
+            return -1;
+        }
+        compactBuf();
+        int read;
+        do {
+            read = in.read(b, off, len);
+        } while (read == 0);
+        if (read == -1) {
+            eof = true;
+            done = true;
+            return -1;
+        }
+        bufferStart += read;
+        return read;
+    }
+
     public ByteString nextLine() {
         try {
             return readLine();
@@ -161,6 +188,17 @@ public class ByteStringInputStream extends InputStream implements Closeable {
         return result;
     }
 
+    public ByteBuf readAllGrowing(long sizeHint) throws IOException {
+        ByteBuf result = new ChunkedByteBuf(sizeHint);
+        while (!eof) {
+            readMore();
+            result.put(buf, 0, bufSz);
+            bufSz = 0;
+        }
+        result.flip();
+        return result;
+    }
+
     public void writeAll(OutputStream out) {
         try {
             while (!eof) {
@@ -192,7 +230,7 @@ public class ByteStringInputStream extends InputStream implements Closeable {
     @Override
     public void close() {
         try {
-            super.close();
+            in.close();
         } catch (IOException e) {
             throw new IOError(e);
         }
@@ -0,0 +1,371 @@
+package byte_lib.io;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+
+import java.io.*;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+public class ParallelBZip2InputStream extends InputStream {
+    private static final long BLOCK_MAGIC = 0x314159265359L;
+    private static final long EOS_MAGIC = 0x177245385090L;
+    private static final long MAGIC_MASK = (1L << 48) - 1;
+    private static final byte[] STREAM_HEADER = {'B', 'Z', 'h', '9'};
+    private static final byte[] EMPTY = new byte[0];
+
+    public static final int MAX_MERGES = 4;
+    public static final int IN_BUF_SIZE = 64 * 1024;
+    public static final int SKIP_COMPACT_SIZE = 1024 * 1024;
+
+    private final InputStream in;
+    private final ForkJoinPool pool;
+    private final int readAhead;
+    private final ArrayDeque<Block> pending;
+    private final long chanceEos;
+
+    private final byte[] inBuf;
+    private int inPtr;
+    private int inLen;
+    private boolean inEof;
+
+    private byte[] cur;
+    private int curLen;
+    private long curBase;
+    private long window;
+    private long blockStart;
+    private boolean blockAfterEos;
+
+    private byte[] out;
+    private int outPtr;
+
+    public ParallelBZip2InputStream(InputStream in) {
+        this(in, ForkJoinPool.commonPool());
+    }
+
+    public ParallelBZip2InputStream(InputStream in, ForkJoinPool pool) {
+        this(in, pool, 2 * pool.getParallelism());
+    }
+
+    public ParallelBZip2InputStream(InputStream in, ForkJoinPool pool, int readAhead) {
+        this(in, pool, readAhead, -1);
+    }
+
+    /**
+     * For tests: chanceEos is one more pattern taken for an end of stream
+     * magic, as if it occurred by chance inside compressed data.
+     */
+    ParallelBZip2InputStream(InputStream in, ForkJoinPool pool, int readAhead, long chanceEos) {
+        if (readAhead <= 0) throw new IllegalArgumentException("readAhead");
+        this.in = in;
+        this.chanceEos = chanceEos;
+        this.pool = pool;
+        this.readAhead = readAhead;
+        pending = new ArrayDeque<>(readAhead);
+        inBuf = new byte[IN_BUF_SIZE];
+        cur = new byte[IN_BUF_SIZE];
+        blockStart = -1;
+        out = EMPTY;
+    }
+
+    @Override
+    public int read() throws IOException {
+        while (outPtr == out.length) {
+            if (!nextBlock()) {
+                return -1;
+            }
+        }
+        return out[outPtr++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        while (outPtr == out.length) {
+            if (!nextBlock()) {
+                return -1;
+            }
+        }
+        int n = Math.min(len, out.length - outPtr);
+        System.arraycopy(out, outPtr, b, off, n);
+        outPtr += n;
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return out.length - outPtr;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Block block : pending) {
+            block.task.cancel(false);
+        }
+        pending.clear();
+        in.close();
+    }
+
+    private boolean nextBlock() throws IOException {
+        while (true) {
+            fillReadAhead();
+            Block block = pending.poll();
+            if (block == null) {
+                return false;
+            }
+            if (block.task == null) {
+                // stream trailer, its block before decompressed fine
+                continue;
+            }
+            out = decompressed(block);
+            outPtr = 0;
+            return true;
+        }
+    }
+
+    private void fillReadAhead() throws IOException {
+        while (pending.size() < readAhead) {
+            Fragment fragment = nextFragment();
+            if (fragment == null) {
+                return;
+            }
+            pending.add(new Block(fragment,
+                    fragment.afterEos ? null : pool.submit(fragment::decompress)));
+        }
+    }
+
+    private byte[] decompressed(Block block) throws IOException {
+        Fragment fragment = block.fragment;
+        ForkJoinTask<byte[]> task = block.task;
+        for (int merges = 0; ; merges++) {
+            try {
+                return task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            } catch (ExecutionException e) {
+                // block and end of stream magic may occur by chance inside
+                // compressed data, then the real block spans several fragments
+                if (!fragment.endsAtMagic || merges >= MAX_MERGES) {
+                    throw new IOException("bzip2 block decompression failed", e.getCause());
+                }
+                fillReadAhead();
+                Block next = pending.poll();
+                if (next == null) {
+                    throw new IOException("bzip2 block decompression failed", e.getCause());
+                }
+                if (next.task != null) {
+                    next.task.cancel(false);
+                }
+                fragment = fragment.merge(next.fragment);
+                task = pool.submit(fragment::decompress);
+            }
+        }
+    }
+
+    private Fragment nextFragment() throws IOException {
+        while (true) {
+            int b = nextByte();
+            if (b == -1) {
+                if (blockStart == -1) {
+                    return null;
+                }
+                Fragment fragment = fragment(blockStart, (curBase + curLen) * 8, false, blockAfterEos);
+                blockStart = -1;
+                return fragment;
+            }
+
+            if (curLen == cur.length) {
+                cur = Arrays.copyOf(cur, cur.length * 2);
+            }
+            cur[curLen++] = (byte) b;
+            window = (window << 8) | b;
+
+            for (int shift = 7; shift >= 0; shift--) {
+                long pattern = (window >>> shift) & MAGIC_MASK;
+                if (pattern != BLOCK_MAGIC && pattern != EOS_MAGIC && pattern != chanceEos) {
+                    continue;
+                }
+                long bit = (curBase + curLen) * 8 - shift - 48;
+                if (bit < curBase * 8) {
+                    continue;
+                }
+                // the data after an end of stream magic is kept too, it is
+                // only decompressed when merged into a block cut short by it
+                Fragment fragment = null;
+                if (blockStart != -1) {
+                    fragment = fragment(blockStart, bit, true, blockAfterEos);
+                }
+                blockStart = bit;
+                blockAfterEos = pattern != BLOCK_MAGIC;
+                compactTo(bit >>> 3);
+                if (fragment != null) {
+                    return fragment;
+                }
+                break;
+            }
+
+            if (blockStart == -1 && curLen > SKIP_COMPACT_SIZE) {
+                compactTo(curBase + curLen - 8);
+            }
+        }
+    }
+
+    private int nextByte() throws IOException {
+        if (inPtr == inLen) {
+            if (inEof) {
+                return -1;
+            }
+            int n = in.read(inBuf, 0, inBuf.length);
+            if (n == -1) {
+                inEof = true;
+                return -1;
+            }
+            inPtr = 0;
+            inLen = n;
+        }
+        return inBuf[inPtr++] & 0xFF;
+    }
+
+    private void compactTo(long absByte) {
+        int off = (int) (absByte - curBase);
+        System.arraycopy(cur, off, cur, 0, curLen - off);
+        curLen -= off;
+        curBase = absByte;
+    }
+
+    private Fragment fragment(long startBit, long endBit, boolean endsAtMagic, boolean afterEos) {
+        long firstByte = startBit >>> 3;
+        int from = (int) (firstByte - curBase);
+        int to = (int) (((endBit + 7) >>> 3) - curBase);
+        return new Fragment(
+                Arrays.copyOfRange(cur, from, to),
+                (int) (startBit & 7),
+                endBit - firstByte * 8,
+                endsAtMagic,
+                afterEos);
+    }
+
+    private static class Block {
+        final Fragment fragment;
+        final ForkJoinTask<byte[]> task;
+
+        Block(Fragment fragment, ForkJoinTask<byte[]> task) {
+            this.fragment = fragment;
+            this.task = task;
+        }
+    }
+
+    private static class Fragment {
+        final byte[] data;
+        final int startBit;
+        final long endBit;
+        final boolean endsAtMagic;
+        final boolean afterEos;
+
+        Fragment(byte[] data, int startBit, long endBit, boolean endsAtMagic, boolean afterEos) {
+            this.data = data;
+            this.startBit = startBit;
+            this.endBit = endBit;
+            this.endsAtMagic = endsAtMagic;
+            this.afterEos = afterEos;
+        }
+
+        Fragment merge(Fragment next) {
+            int keep = (int) (endBit >>> 3);
+            byte[] merged = Arrays.copyOf(data, keep + next.data.length);
+            System.arraycopy(next.data, 0, merged, keep, next.data.length);
+            return new Fragment(merged, startBit, keep * 8L + next.endBit, next.endsAtMagic, afterEos);
+        }
+
+        byte[] decompress() throws IOException {
+            try (InputStream in = new BZip2CompressorInputStream(
+                    new ByteArrayInputStream(toStream()))) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 4);
+                byte[] buf = new byte[IN_BUF_SIZE];
+                int n;
+                while ((n = in.read(buf)) != -1) {
+                    out.write(buf, 0, n);
+                }
+                return out.toByteArray();
+            }
+        }
+
+        /**
+         * Wraps the block into a standalone single-block bzip2 stream,
+         * whose combined CRC equals the block CRC.
+         */
+        private byte[] toStream() {
+            BitWriter w = new BitWriter(data.length + 16);
+            for (byte b : STREAM_HEADER) {
+                w.write(8, b);
+            }
+            long blockCrc = bits(startBit + 48, 32);
+            long nBits = endBit - startBit;
+            long bit = startBit;
+            for (; nBits >= 8; nBits -= 8, bit += 8) {
+                w.write(8, bits(bit, 8));
+            }
+            w.write((int) nBits, bits(bit, (int) nBits));
+            w.write(48, EOS_MAGIC);
+            w.write(32, blockCrc);
+            return w.toByteArray();
+        }
+
+        private long bits(long off, int n) {
+            long r = 0;
+            for (int i = 0; i < n; ) {
+                long bit = off + i;
+                int inByte = 8 - (int) (bit & 7);
+                int take = Math.min(inByte, n - i);
+                int b = data[(int) (bit >>> 3)] & 0xFF;
+                r = (r << take) | ((b >>> (inByte - take)) & ((1 << take) - 1));
+                i += take;
+            }
+            return r;
+        }
+    }
+
+    private static class BitWriter {
+        private byte[] buf;
+        private int len;
+        private long acc;
+        private int accBits;
+
+        BitWriter(int capacity) {
+            buf = new byte[capacity];
+        }
+
+        void write(int n, long value) {
+            for (int i = n; i > 0; ) {
+                int take = Math.min(i, 32);
+                i -= take;
+                acc = (acc << take) | ((value >>> i) & ((1L << take) - 1));
+                accBits += take;
+                while (accBits >= 8) {
+                    accBits -= 8;
+                    put((byte) (acc >>> accBits));
+                }
+            }
+        }
+
+        byte[] toByteArray() {
+            if (accBits > 0) {
+                put((byte) (acc << (8 - accBits)));
+                accBits = 0;
+            }
+            return Arrays.copyOf(buf, len);
+        }
+
+        private void put(byte b) {
+            if (len == buf.length) {
+                buf = Arrays.copyOf(buf, buf.length * 2);
+            }
+            buf[len++] = b;
+        }
+    }
+}
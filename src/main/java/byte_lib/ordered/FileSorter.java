@@ -1,33 +1,346 @@
 package byte_lib.ordered;
 
 import byte_lib.io.ByteFiles;
+import byte_lib.io.ByteStringInputStream;
 import byte_lib.string.ByteString;
+import byte_lib.string.Ranges;
+import org.iq80.snappy.SnappyFramedOutputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.IOException;
-import java.io.PrintStream;
+import java.io.*;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
+import static byte_lib.io.ByteFiles.inputStream;
 import static byte_lib.io.ByteFiles.printStream;
+import static byte_lib.string.ByteString.ba;
 
 public class FileSorter {
     private final static Logger LOG = LoggerFactory.getLogger(FileSorter.class);
 
+    public static final long DEFAULT_MEMORY_BUDGET = 1024L * 1024 * 1024;
+    public static final int MAX_RUN_SIZE = Integer.MAX_VALUE - 8;
+    public static final int RUN_READER_MEMORY = 1024 * 1024;
+
+    private long memoryBudget = DEFAULT_MEMORY_BUDGET;
+    private File tempDir = new File(System.getProperty("java.io.tmpdir"));
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private SortEngine engine = SortEngine.TIM_SORT;
+
     public static void sortFile(String inFile, String outFile) throws IOException {
-        ByteString inFileContent = ByteFiles.readAll(inFile);
-        LOG.info("Splitting lines");
+        sortFile(inFile, outFile, SortEngine.TIM_SORT);
+    }
+
+    /**
+     * Sorting a file in place reads it to memory, as a mapped file
+     * can't be truncated while it is still mapped.
+     */
+    public static void sortFile(String inFile, String outFile, SortEngine engine) throws IOException {
+        boolean inPlace = new File(inFile).getCanonicalFile().equals(new File(outFile).getCanonicalFile());
+        try (ByteString inFileContent = inPlace ? ByteFiles.readAll(inFile) : ByteFiles.load(inFile)) {
+            LOG.info("Splitting lines");
+
+            Ranges lines = inFileContent.splitRanges(ByteString.NEW_LINE);
+            LOG.info("Sorting {} entries", lines.size());
+
+            long[] order = sortedOrder(lines, engine, true);
+
+            try (PrintStream out = printStream(outFile)) {
+                for (long i : order) {
+                    lines.substring((int) i).writeTo(out);
+                    out.println();
+                }
+            }
+        }
+    }
+
+    private static long[] sortedOrder(Ranges ranges, SortEngine engine, boolean parallel) {
+        long[] order = new long[ranges.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        engine.sort(order, PrefixComparator.byRange(ranges), parallel);
+        return order;
+    }
+
+    public static FileSorter external() {
+        return new FileSorter();
+    }
+
+    public FileSorter withMemoryBudget(long memoryBudget) {
+        if (memoryBudget <= 0) throw new IllegalArgumentException("memoryBudget");
+        this.memoryBudget = memoryBudget;
+        return this;
+    }
+
+    public FileSorter withTempDir(File tempDir) {
+        this.tempDir = tempDir;
+        return this;
+    }
+
+    public FileSorter withEngine(SortEngine engine) {
+        if (engine == null) throw new IllegalArgumentException("engine");
+        this.engine = engine;
+        return this;
+    }
+
+    public FileSorter withParallelism(int parallelism) {
+        if (parallelism <= 0) throw new IllegalArgumentException("parallelism");
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Sorts lines of a file that may not fit in memory: the input is cut into
+     * runs of at most memoryBudget / (parallelism + 1) bytes, runs are sorted
+     * concurrently and spilled as snappy files, then k-way merged.
+     * Every open run takes about {@link #RUN_READER_MEMORY} on top of the
+     * budget, so when there are too many runs they are merged in several passes.
+     */
+    public void sort(String inFile, String outFile) throws IOException {
+        int runSize = (int) Math.min(MAX_RUN_SIZE, memoryBudget / (parallelism + 1));
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        ArrayDeque<Future<Run>> inFlight = new ArrayDeque<>();
+        List<File> runFiles = new ArrayList<>();
+        try (ByteStringInputStream in = inputStream(inFile)) {
+            byte[] buf = new byte[runSize];
+            int len = 0;
+            while (true) {
+                int n = in.read(buf, len, buf.length - len);
+                if (n == -1) {
+                    break;
+                }
+                len += n;
+                if (len < buf.length) {
+                    continue;
+                }
+                int cut = lastNewLine(buf, len) + 1;
+                if (cut == 0) {
+                    if (buf.length == MAX_RUN_SIZE) {
+                        throw new IOException("line longer than run size");
+                    }
+                    buf = Arrays.copyOf(buf, (int) Math.min(MAX_RUN_SIZE, buf.length * 2L));
+                    continue;
+                }
+
+                if (inFlight.size() >= parallelism) {
+                    runFiles.add(await(inFlight.poll()).file);
+                }
+                Run run = new Run(buf, cut, newRunFile(), engine);
+                inFlight.add(executor.submit(run::sortAndSpill));
+
+                byte[] next = new byte[Math.max(runSize, 2 * (len - cut))];
+                System.arraycopy(buf, cut, next, 0, len - cut);
+                len -= cut;
+                buf = next;
+            }
+
+            if (runFiles.isEmpty() && inFlight.isEmpty()) {
+                LOG.info("Input fits in one run, sorting in memory");
+                new Run(buf, len, null, engine).sortTo(outFile);
+                return;
+            }
+
+            if (len > 0) {
+                Run run = new Run(buf, len, newRunFile(), engine);
+                inFlight.add(executor.submit(run::sortAndSpill));
+            }
+            while (!inFlight.isEmpty()) {
+                runFiles.add(await(inFlight.poll()).file);
+            }
+
+            merge(runFiles, outFile);
+        } finally {
+            executor.shutdownNow();
+            for (Future<Run> run : inFlight) {
+                run.cancel(true);
+            }
+            for (File file : runFiles) {
+                file.delete();
+            }
+        }
+    }
 
-        long[] items = inFileContent.splitIdx(ByteString.NEW_LINE);
-        LOG.info("Sorting {} entries", items.length);
+    private File newRunFile() throws IOException {
+        File file = File.createTempFile("sort-run", ".snappy", tempDir);
+        file.deleteOnExit();
+        return file;
+    }
 
-        LongTimSort.sort(items, inFileContent::compareByIdx);
+    private static Run await(Future<Run> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof IOError) throw (IOError) cause;
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Merges at most memoryBudget / RUN_READER_MEMORY runs at once, writing
+     * intermediate passes as new runs. These are added to runFiles to be deleted.
+     */
+    private void merge(List<File> runFiles, String outFile) throws IOException {
+        int fanIn = (int) Math.max(2, Math.min(Integer.MAX_VALUE, memoryBudget / RUN_READER_MEMORY));
+        List<File> pass = new ArrayList<>(runFiles);
+        while (pass.size() > fanIn) {
+            LOG.info("Merging {} runs {} at a time", pass.size(), fanIn);
+            List<File> next = new ArrayList<>();
+            for (int i = 0; i < pass.size(); i += fanIn) {
+                List<File> group = pass.subList(i, Math.min(i + fanIn, pass.size()));
+                if (group.size() == 1) {
+                    next.add(group.get(0));
+                    continue;
+                }
+                File file = newRunFile();
+                runFiles.add(file);
+                try (DataOutputStream out = runOutputStream(file)) {
+                    mergeRuns(group, line -> {
+                        try {
+                            writeRecord(out, line);
+                        } catch (IOException e) {
+                            throw new IOError(e);
+                        }
+                    });
+                }
+                for (File merged : group) {
+                    merged.delete();
+                }
+                next.add(file);
+            }
+            pass = next;
+        }
 
+        LOG.info("Merging {} runs", pass.size());
         try (PrintStream out = printStream(outFile)) {
-            for (long idx : items) {
-                inFileContent.writeToByIdx(idx, out);
+            mergeRuns(pass, line -> {
+                line.writeTo(out);
                 out.println();
+            });
+            if (out.checkError()) {
+                throw new IOException("Failed to write " + outFile);
+            }
+        }
+    }
+
+    private static void mergeRuns(List<File> runFiles, Consumer<ByteString> out) throws IOException {
+        List<RunReader> readers = new ArrayList<>();
+        try {
+            for (File file : runFiles) {
+                readers.add(new RunReader(file));
+            }
+            new LoserTree(Comparator.naturalOrder(), readers).merge(out);
+        } finally {
+            for (RunReader reader : readers) {
+                reader.close();
+            }
+        }
+    }
+
+    /**
+     * Not a {@link PrintStream}, which would swallow a failed write.
+     */
+    private static DataOutputStream runOutputStream(File file) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(
+                new SnappyFramedOutputStream(new FileOutputStream(file))));
+    }
+
+    private static void writeRecord(DataOutputStream out, ByteString line) throws IOException {
+        out.writeInt((int) line.length());
+        line.writeTo(out);
+    }
+
+    private static int lastNewLine(byte[] buf, int len) {
+        for (int i = len - 1; i >= 0; i--) {
+            if (buf[i] == '\n') {
+                return i;
             }
         }
+        return -1;
     }
 
+    private static class Run {
+        final byte[] buf;
+        final int len;
+        final File file;
+        final SortEngine engine;
+
+        Run(byte[] buf, int len, File file, SortEngine engine) {
+            this.buf = buf;
+            this.len = len;
+            this.file = file;
+            this.engine = engine;
+        }
+
+        Run sortAndSpill() throws IOException {
+            Ranges lines = ba(buf, 0, len).splitRanges(ByteString.NEW_LINE);
+            long[] order = sortedOrder(lines, engine, false);
+            LOG.info("Spilling {} sorted entries to {}", order.length, file);
+            try (DataOutputStream out = runOutputStream(file)) {
+                for (long i : order) {
+                    writeRecord(out, lines.substring((int) i));
+                }
+            }
+            return this;
+        }
+
+        void sortTo(String outFile) {
+            Ranges lines = ba(buf, 0, len).splitRanges(ByteString.NEW_LINE);
+            long[] order = sortedOrder(lines, engine, true);
+            try (PrintStream out = printStream(outFile)) {
+                for (long i : order) {
+                    lines.substring((int) i).writeTo(out);
+                    out.println();
+                }
+            }
+        }
+    }
+
+    private static class RunReader implements Supplier<ByteString>, Closeable {
+        private final DataInputStream in;
+        private byte[] buf = new byte[256];
+
+        RunReader(File file) {
+            in = new DataInputStream(inputStream(file));
+        }
+
+        @Override
+        public ByteString get() {
+            try {
+                int len;
+                try {
+                    len = in.readInt();
+                } catch (EOFException e) {
+                    return null;
+                }
+                if (len > buf.length) {
+                    buf = new byte[Math.max(len, buf.length * 2)];
+                }
+                in.readFully(buf, 0, len);
+                return ba(buf, 0, len);
+            } catch (IOException e) {
+                throw new IOError(e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
 }
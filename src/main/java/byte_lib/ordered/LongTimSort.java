@@ -26,6 +26,9 @@
 
 package byte_lib.ordered;
 
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
 // from java.util
 public class LongTimSort {
     private static final int MIN_GALLOP = 7;
@@ -344,6 +347,181 @@ public class LongTimSort {
         sort(items, 0, items.length, cmp, null, 0, 0);
     }
 
+    public static void sort(long[] items, int fromIndex, int toIndex, LongComparator cmp) {
+        if (fromIndex < 0 || fromIndex > toIndex || toIndex > items.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        sort(items, fromIndex, toIndex, cmp, null, 0, 0);
+    }
+
+    /**
+     * The minimum array length below which a parallel sorting
+     * algorithm will not further partition the sorting task.
+     */
+    private static final int MIN_ARRAY_SORT_GRAN = 1 << 13;
+
+    public static void parallelSort(long[] items, LongComparator cmp) {
+        parallelSort(items, cmp, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Sorts the array like {@link #sort} but splits it into pieces that
+     * are sorted on the given pool and merged pairwise, the merges being
+     * parallel as well. The comparator must be safe to call concurrently.
+     *
+     * @param items the array to be sorted
+     * @param cmp the comparator to determine the order of the sort
+     * @param pool the pool to run the sorting tasks on
+     */
+    public static void parallelSort(long[] items, LongComparator cmp, ForkJoinPool pool) {
+        int n = items.length;
+        int p = pool.getParallelism();
+        if (n <= MIN_ARRAY_SORT_GRAN || p == 1) {
+            sort(items, cmp);
+            return;
+        }
+        int gran = Math.max(n / (p << 2), MIN_ARRAY_SORT_GRAN);
+        pool.invoke(new SortTask(items, new long[n], 0, n, false, gran, cmp));
+    }
+
+    /**
+     * Sorts a[lo, hi) leaving the result in w when toWork is set and in a
+     * otherwise. Children sort into the opposite array so that every merge
+     * reads one array and writes the other.
+     */
+    private static class SortTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final long[] a;
+        private final long[] w;
+        private final int lo;
+        private final int hi;
+        private final boolean toWork;
+        private final int gran;
+        private final LongComparator c;
+
+        SortTask(long[] a, long[] w, int lo, int hi, boolean toWork, int gran, LongComparator c) {
+            this.a = a;
+            this.w = w;
+            this.lo = lo;
+            this.hi = hi;
+            this.toWork = toWork;
+            this.gran = gran;
+            this.c = c;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo <= gran) {
+                sort(a, lo, hi, c, w, lo, hi - lo);
+                if (toWork) {
+                    System.arraycopy(a, lo, w, lo, hi - lo);
+                }
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            invokeAll(new SortTask(a, w, lo, mid, !toWork, gran, c),
+                    new SortTask(a, w, mid, hi, !toWork, gran, c));
+            long[] src = toWork ? a : w;
+            long[] dst = toWork ? w : a;
+            new MergeTask(src, dst, lo, mid, mid, hi, lo, gran, c).compute();
+        }
+    }
+
+    /**
+     * Stable merge of src[lo1, hi1) and src[lo2, hi2) into dst starting at
+     * out. The larger run is split in the middle and the split point is
+     * found in the other run by binary search, so both halves merge
+     * independently.
+     */
+    private static class MergeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final long[] src;
+        private final long[] dst;
+        private final int lo1;
+        private final int hi1;
+        private final int lo2;
+        private final int hi2;
+        private final int out;
+        private final int gran;
+        private final LongComparator c;
+
+        MergeTask(long[] src, long[] dst, int lo1, int hi1, int lo2, int hi2,
+                  int out, int gran, LongComparator c) {
+            this.src = src;
+            this.dst = dst;
+            this.lo1 = lo1;
+            this.hi1 = hi1;
+            this.lo2 = lo2;
+            this.hi2 = hi2;
+            this.out = out;
+            this.gran = gran;
+            this.c = c;
+        }
+
+        @Override
+        protected void compute() {
+            int n1 = hi1 - lo1;
+            int n2 = hi2 - lo2;
+            if (n1 + n2 <= gran || n1 == 0 || n2 == 0) {
+                mergeSequential();
+                return;
+            }
+            int split1, split2;
+            if (n1 >= n2) {
+                split1 = (lo1 + hi1) >>> 1;
+                split2 = lowerBound(src[split1], lo2, hi2);
+            } else {
+                split2 = (lo2 + hi2) >>> 1;
+                split1 = upperBound(src[split2], lo1, hi1);
+            }
+            int out2 = out + (split1 - lo1) + (split2 - lo2);
+            invokeAll(new MergeTask(src, dst, lo1, split1, lo2, split2, out, gran, c),
+                    new MergeTask(src, dst, split1, hi1, split2, hi2, out2, gran, c));
+        }
+
+        private int lowerBound(long key, int lo, int hi) {
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (c.compare(src[mid], key) < 0) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        private int upperBound(long key, int lo, int hi) {
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (c.compare(src[mid], key) <= 0) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        private void mergeSequential() {
+            int i = lo1;
+            int j = lo2;
+            int k = out;
+            while (i < hi1 && j < hi2) {
+                if (c.compare(src[j], src[i]) < 0) {
+                    dst[k++] = src[j++];
+                } else {
+                    dst[k++] = src[i++];
+                }
+            }
+            System.arraycopy(src, i, dst, k, hi1 - i);
+            k += hi1 - i;
+            System.arraycopy(src, j, dst, k, hi2 - j);
+        }
+    }
+
     /**
      * Pushes the specified run onto the pending-run stack.
      *
@@ -0,0 +1,90 @@
+package byte_lib.ordered;
+
+import byte_lib.string.ByteString;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * K-way merge of sorted streams. Every emitted line costs log2(k)
+ * comparisons. A line handed to the consumer is only valid until
+ * its stream is advanced, so the sources may reuse their buffers.
+ */
+public class LoserTree {
+    private final List<Supplier<ByteString>> in;
+    private final ByteString[] heads;
+    private final int[] tree;
+    private final Comparator<ByteString> cmp;
+
+    public LoserTree(Comparator<ByteString> cmp, List<? extends Supplier<ByteString>> in) {
+        this.in = new ArrayList<>(in);
+        this.cmp = cmp;
+        heads = new ByteString[in.size()];
+        tree = new int[Math.max(1, in.size())];
+        for (int i = 0; i < heads.length; i++) {
+            heads[i] = in.get(i).get();
+        }
+        build();
+    }
+
+    private void build() {
+        int k = in.size();
+        int[] winners = new int[2 * k];
+        for (int i = 0; i < k; i++) {
+            winners[k + i] = i;
+        }
+        for (int n = k - 1; n >= 1; n--) {
+            int a = winners[2 * n];
+            int b = winners[2 * n + 1];
+            if (less(a, b)) {
+                winners[n] = a;
+                tree[n] = b;
+            } else {
+                winners[n] = b;
+                tree[n] = a;
+            }
+        }
+        tree[0] = k > 1 ? winners[1] : 0;
+    }
+
+    public ByteString peek() {
+        return heads.length == 0 ? null : heads[tree[0]];
+    }
+
+    public void advance() {
+        int winner = tree[0];
+        heads[winner] = in.get(winner).get();
+        for (int n = (winner + heads.length) >> 1; n >= 1; n >>= 1) {
+            if (less(tree[n], winner)) {
+                int t = tree[n];
+                tree[n] = winner;
+                winner = t;
+            }
+        }
+        tree[0] = winner;
+    }
+
+    public void merge(Consumer<ByteString> out) {
+        ByteString line;
+        while ((line = peek()) != null) {
+            out.accept(line);
+            advance();
+        }
+    }
+
+    private boolean less(int a, int b) {
+        ByteString ha = heads[a];
+        ByteString hb = heads[b];
+        if (ha == null) {
+            return false;
+        }
+        if (hb == null) {
+            return true;
+        }
+        int c = cmp.compare(ha, hb);
+        return c < 0 || (c == 0 && a < b);
+    }
+}
@@ -0,0 +1,73 @@
+package byte_lib.ordered;
+
+import byte_lib.string.ByteString;
+import byte_lib.string.Ranges;
+
+import static byte_lib.string.ByteString.idxLen;
+import static byte_lib.string.ByteString.idxStart;
+
+/**
+ * Comparator of items that can also give an 8-byte key of each item.
+ * Keys compared unsigned must agree with the comparator, except that
+ * equal keys say nothing about the order.
+ */
+public interface PrefixComparator extends LongComparator {
+    long SIGN_FLIP = 0x8080808080808080L;
+
+    long prefix(long item);
+
+    /**
+     * Items are substrings of content packed by {@link ByteString#encodeIdx}.
+     */
+    static PrefixComparator byIdx(ByteString content) {
+        return new PrefixComparator() {
+            @Override
+            public long prefix(long item) {
+                return PrefixComparator.prefix(content, idxStart(item), idxLen(item));
+            }
+
+            @Override
+            public int compare(long a, long b) {
+                return content.compareByIdx(a, b);
+            }
+        };
+    }
+
+    /**
+     * Items are ordinals of the ranges.
+     */
+    static PrefixComparator byRange(Ranges ranges) {
+        ByteString content = ranges.string();
+        return new PrefixComparator() {
+            @Override
+            public long prefix(long item) {
+                int i = (int) item;
+                return PrefixComparator.prefix(content, ranges.start(i), ranges.length(i));
+            }
+
+            @Override
+            public int compare(long a, long b) {
+                return ranges.compare((int) a, (int) b);
+            }
+        };
+    }
+
+    /**
+     * Bytes compare signed in ByteString, so every byte gets its top bit
+     * flipped to order correctly as unsigned. Short substrings are padded
+     * with zeros, which may tie with a real byte.
+     */
+    static long prefix(ByteString content, long start, long len) {
+        if (len >= 8) {
+            return content.longAt(start) ^ SIGN_FLIP;
+        }
+        long key = 0;
+        for (int i = 0; i < 8; i++) {
+            key <<= 8;
+            if (i < len) {
+                key |= (content.byteAt(start + i) ^ 0x80) & 0xFF;
+            }
+        }
+        return key;
+    }
+}
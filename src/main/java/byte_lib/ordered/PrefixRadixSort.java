@@ -0,0 +1,103 @@
+package byte_lib.ordered;
+
+import byte_lib.string.ByteString;
+
+/**
+ * MSD radix sort on 8-byte item prefixes kept in a parallel array.
+ * Items are only compared in full to break ties between equal prefixes.
+ */
+public class PrefixRadixSort {
+    private static final int INSERTION_SORT_THRESHOLD = 32;
+
+    private final PrefixComparator cmp;
+    private final long[] items;
+    private final long[] keys;
+    private final long[] itemsTmp;
+    private final long[] keysTmp;
+
+    private PrefixRadixSort(long[] items, PrefixComparator cmp) {
+        this.cmp = cmp;
+        this.items = items;
+        keys = new long[items.length];
+        itemsTmp = new long[items.length];
+        keysTmp = new long[items.length];
+    }
+
+    /**
+     * Sorts line indexes packed by {@link ByteString#encodeIdx} in the order
+     * of {@link ByteString#compareByIdx}.
+     */
+    public static void sort(ByteString content, long[] items) {
+        sort(items, PrefixComparator.byIdx(content));
+    }
+
+    public static void sort(long[] items, PrefixComparator cmp) {
+        if (items.length < 2) {
+            return;
+        }
+        new PrefixRadixSort(items, cmp).sort();
+    }
+
+    private void sort() {
+        for (int i = 0; i < items.length; i++) {
+            keys[i] = cmp.prefix(items[i]);
+        }
+        radixSort(0, items.length, 0);
+    }
+
+    private void radixSort(int lo, int hi, int depth) {
+        if (hi - lo <= INSERTION_SORT_THRESHOLD) {
+            insertionSort(lo, hi);
+            return;
+        }
+        if (depth == 8) {
+            LongTimSort.sort(items, lo, hi, cmp);
+            return;
+        }
+
+        int shift = 56 - 8 * depth;
+        int[] count = new int[257];
+        for (int i = lo; i < hi; i++) {
+            count[(int) ((keys[i] >>> shift) & 0xFF) + 1]++;
+        }
+        for (int b = 0; b < 256; b++) {
+            count[b + 1] += count[b];
+        }
+        int[] bucketStart = count.clone();
+        for (int i = lo; i < hi; i++) {
+            int to = lo + count[(int) ((keys[i] >>> shift) & 0xFF)]++;
+            keysTmp[to] = keys[i];
+            itemsTmp[to] = items[i];
+        }
+        System.arraycopy(keysTmp, lo, keys, lo, hi - lo);
+        System.arraycopy(itemsTmp, lo, items, lo, hi - lo);
+
+        for (int b = 0; b < 256; b++) {
+            int from = lo + bucketStart[b];
+            int to = lo + bucketStart[b + 1];
+            if (to - from > 1) {
+                radixSort(from, to, depth + 1);
+            }
+        }
+    }
+
+    private void insertionSort(int lo, int hi) {
+        for (int i = lo + 1; i < hi; i++) {
+            long key = keys[i];
+            long item = items[i];
+            int j = i - 1;
+            while (j >= lo && compare(keys[j], items[j], key, item) > 0) {
+                keys[j + 1] = keys[j];
+                items[j + 1] = items[j];
+                j--;
+            }
+            keys[j + 1] = key;
+            items[j + 1] = item;
+        }
+    }
+
+    private int compare(long key1, long item1, long key2, long item2) {
+        int c = Long.compareUnsigned(key1, key2);
+        return c != 0 ? c : cmp.compare(item1, item2);
+    }
+}
@@ -0,0 +1,22 @@
+package byte_lib.ordered;
+
+public enum SortEngine {
+    TIM_SORT {
+        @Override
+        public void sort(long[] items, PrefixComparator cmp, boolean parallel) {
+            if (parallel) {
+                LongTimSort.parallelSort(items, cmp);
+            } else {
+                LongTimSort.sort(items, cmp);
+            }
+        }
+    },
+    PREFIX_RADIX {
+        @Override
+        public void sort(long[] items, PrefixComparator cmp, boolean parallel) {
+            PrefixRadixSort.sort(items, cmp);
+        }
+    };
+
+    public abstract void sort(long[] items, PrefixComparator cmp, boolean parallel);
+}
@@ -21,7 +21,11 @@ public class ByteString implements Comparable<ByteString>, AutoCloseable {
     public static final int EXCHANGE_BUF_SIZE = 64 * 1024;
     public static final int SMALL_WRITE_TO_THRESHOLD = 20;
 
+    private static final long ONES = 0x0101010101010101L;
+    private static final long LOW_BITS = 0x7F7F7F7F7F7F7F7FL;
+
     private ByteBuf buffer;
+    private volatile long hash;
 
     private ByteString(ByteBuf buffer) {
         this.buffer = buffer;
@@ -61,7 +65,18 @@ public class ByteString implements Comparable<ByteString>, AutoCloseable {
         buf.put(buffer);
         buffer.position(pos);
         buf.flip();
-        return new ByteString(buf);
+        ByteString copy = new ByteString(buf);
+        copy.hash = hash;
+        return copy;
+    }
+
+    /**
+     * Appends the bytes at the position of out.
+     */
+    public void writeTo(ByteBuf out) {
+        long pos = buffer.position();
+        out.put(buffer);
+        buffer.position(pos);
     }
 
     @Override
@@ -78,23 +93,30 @@ public class ByteString implements Comparable<ByteString>, AutoCloseable {
             return false;
         }
 
-        for (int i = 0; i < len; i++) {
-            if (byteAt(i) != that.byteAt(i)) {
-                return false;
-            }
-        }
-        return true;
+        return mismatch(buffer, buffer.position(),
+                that.buffer, that.buffer.position(), len) == -1;
     }
 
     @Override
     public int hashCode() {
-        long result = 1;
-        long len = length();
-        result = 31 * result + len;
-        for (int i = 0; i < len; i++) {
-            result = 31 * result + byteAt(i);
+        return (int) longHashCode();
+    }
+
+    /**
+     * 64-bit polynomial hash of the bytes, computed on first use and cached
+     * like String.hash, so the bytes must not change after it was taken.
+     */
+    public long longHashCode() {
+        long h = hash;
+        if (h == 0) {
+            long len = length();
+            h = 31 + len;
+            for (long i = 0; i < len; i++) {
+                h = 31 * h + byteAt(i);
+            }
+            hash = h;
         }
-        return (int) result;
+        return h;
     }
 
 
@@ -144,6 +166,14 @@ public class ByteString implements Comparable<ByteString>, AutoCloseable {
         return buffer.get(index + buffer.position());
     }
 
+    public long longAt(long index) {
+        return buffer.getLong(index + buffer.position());
+    }
+
+    public int intAt(long index) {
+        return buffer.getInt(index + buffer.position());
+    }
+
     public long lastIndexOf(byte ch) {
         for (long i = length() - 1; i >= 0; i--) {
             if (byteAt(i) == ch) {
@@ -160,6 +190,17 @@ public class ByteString implements Comparable<ByteString>, AutoCloseable {
         return new ByteString(buf);
     }
 
+    /**
+     * Points this string at bytes [from, to) of its underlying buffer,
+     * for {@link ByteStringView}. Drops the cached hash.
+     */
+    ByteString moveTo(long from, long to) {
+        buffer.limit(to);
+        buffer.position(from);
+        hash = 0;
+        return this;
+    }
+
     public boolean isEmpty() {
         return length() == 0;
     }
@@ -182,12 +223,7 @@ public class ByteString implements Comparable<ByteString>, AutoCloseable {
         if (string.length() > length()) {
             return false;
         }
-        for (long i = 0; i < string.length(); i++) {
-            if (string.byteAt(i) != byteAt(i)) {
-                return false;
-            }
-        }
-        return true;
+        return regionMatches(0, string, 0, string.length());
     }
 
     public boolean endsWith(ByteString string) {
@@ -195,12 +231,39 @@ public class ByteString implements Comparable<ByteString>, AutoCloseable {
             return false;
         }
         long off = length() - string.length();
-        for (long i = 0; i < string.length(); i++) {
-            if (string.byteAt(i) != byteAt(off + i)) {
-                return false;
+        return regionMatches(off, string, 0, string.length());
+    }
+
+    public boolean regionMatches(long off, ByteString other, long otherOff, long len) {
+        return mismatch(buffer, buffer.position() + off,
+                other.buffer, other.buffer.position() + otherOff, len) == -1;
+    }
+
+    /**
+     * Index of the first differing byte of two regions or -1, comparing
+     * big-endian words so the first difference is the highest set bit of the XOR.
+     */
+    private static long mismatch(ByteBuf a, long aOff, ByteBuf b, long bOff, long len) {
+        long i = 0;
+        for (; i + 8 <= len; i += 8) {
+            long diff = a.getLong(aOff + i) ^ b.getLong(bOff + i);
+            if (diff != 0) {
+                return i + (Long.numberOfLeadingZeros(diff) >>> 3);
+            }
+        }
+        if (i + 4 <= len) {
+            int diff = a.getInt(aOff + i) ^ b.getInt(bOff + i);
+            if (diff != 0) {
+                return i + (Integer.numberOfLeadingZeros(diff) >>> 3);
             }
+            i += 4;
         }
-        return true;
+        for (; i < len; i++) {
+            if (a.get(aOff + i) != b.get(bOff + i)) {
+                return i;
+            }
+        }
+        return -1;
     }
 
     public long indexOf(byte ch) {
@@ -214,7 +277,15 @@ public class ByteString implements Comparable<ByteString>, AutoCloseable {
 
         long strLen = str.length();
         long wholeLen = end - strLen;
+        if (strLen == 0) {
+            return start <= wholeLen ? start : -1;
+        }
+        byte first = str.byteAt(0);
         for (long i = start; i <= wholeLen; i++) {
+            i = indexOf(first, i, wholeLen + 1);
+            if (i == -1) {
+                break;
+            }
             boolean found = true;
             for (long j = 0; j < strLen; j++) {
                 if (byteAt(i + j) != str.byteAt(j)) {
@@ -230,7 +301,16 @@ public class ByteString implements Comparable<ByteString>, AutoCloseable {
     }
 
     public long indexOf(byte ch, long start, long end) {
-        for (long i = start; i < end; i++) {
+        long pos = buffer.position();
+        long pattern = (ch & 0xFFL) * ONES;
+        long i = start;
+        for (; i + 8 <= end; i += 8) {
+            long match = zeroBytes(buffer.getLong(pos + i) ^ pattern);
+            if (match != 0) {
+                return i + (Long.numberOfLeadingZeros(match) >>> 3);
+            }
+        }
+        for (; i < end; i++) {
             if (byteAt(i) == ch) {
                 return i;
             }
@@ -238,6 +318,14 @@ public class ByteString implements Comparable<ByteString>, AutoCloseable {
         return -1;
     }
 
+    /**
+     * Sets the high bit of every zero byte in a word, exact (no borrow
+     * propagation), so the first match is the first set bit from the top.
+     */
+    private static long zeroBytes(long word) {
+        return ~(((word & LOW_BITS) + LOW_BITS) | word | LOW_BITS);
+    }
+
     public boolean contains(ByteString key) {
         return indexOf(key, 0, length()) != -1;
     }
@@ -268,6 +356,15 @@ public class ByteString implements Comparable<ByteString>, AutoCloseable {
         return arr;
     }
 
+    public Ranges splitRanges(ByteString separator) {
+        Ranges ranges = new Ranges(this, howMuch(separator));
+        iterateIdx(separator, (start, end) -> {
+            ranges.add(start, end);
+            return true;
+        });
+        return ranges;
+    }
+
     public void iterate(ByteString str, Consumer<ByteString> it) {
         iterateIdx(str, (start, end) -> {
             it.accept(substring(start, end));
@@ -304,13 +401,12 @@ public class ByteString implements Comparable<ByteString>, AutoCloseable {
 
     private void iterateIdx(byte sep, long start, long end, SubstringIterator it) {
         long s = start;
-        for (long i = start; i < end; i++) {
-            if (byteAt(i) == sep) {
-                if (s < i && !it.substring(s, i)) {
-                    return;
-                }
-                s = i + 1;
+        long i;
+        while ((i = indexOf(sep, s, end)) != -1) {
+            if (s < i && !it.substring(s, i)) {
+                return;
             }
+            s = i + 1;
         }
         if (s < end) {
             it.substring(s, end);
@@ -337,17 +433,17 @@ public class ByteString implements Comparable<ByteString>, AutoCloseable {
 
     @Override
     public int compareTo(ByteString o) {
-        for (int i = 0; i < length() && i < o.length(); i++) {
-            if (byteAt(i) < o.byteAt(i)) {
-                return -1;
-            } else if (byteAt(i) > o.byteAt(i)) {
-                return 1;
-            }
+        long len = length();
+        long oLen = o.length();
+        long i = mismatch(buffer, buffer.position(),
+                o.buffer, o.buffer.position(), Math.min(len, oLen));
+        if (i != -1) {
+            return byteAt(i) < o.byteAt(i) ? -1 : 1;
         }
 
-        if (length() < o.length()) {
+        if (len < oLen) {
             return -1;
-        } else if (length() > o.length()) {
+        } else if (len > oLen) {
             return 1;
         }
 
@@ -410,9 +506,9 @@ public class ByteString implements Comparable<ByteString>, AutoCloseable {
 
 
     public ByteString fields(ByteString separator, int fieldStart, int fieldEnd) {
-        long []r = new long[] { 0,  0, length() };
-        fields0(separator, 0, length(), fieldStart, fieldEnd, r);
-        return substring(r[1], r[2]);
+        long []range = new long[2];
+        fields0(separator, 0, length(), fieldStart, fieldEnd, range);
+        return substring(range[0], range[1]);
     }
 
 
@@ -421,37 +517,62 @@ public class ByteString implements Comparable<ByteString>, AutoCloseable {
                           long end,
                           int fieldStart,
                           int fieldEnd) {
-        long []r = new long[] { 0,  0, end };
-        if (fieldStart > fieldEnd) throw new IllegalArgumentException("fieldStart");
-        iterateIdx(separator, start, end, (s, e) -> {
-            if (r[0] == fieldStart) r[1] = s;
-            if (r[0] == fieldEnd) r[2] = e;
-            r[0]++;
-
-             return r[0] <= fieldStart ||
-                     (r[0] <= fieldEnd &&
-                             fieldEnd != Integer.MAX_VALUE);
-        });
-        return encodeIdx(r[1], r[2]);
-    }
-
-
-    private void fields0(ByteString separator,
+        return fields0(separator, start, end, fieldStart, fieldEnd, null);
+    }
+
+    /**
+     * Like {@link #fieldsIdx} but stores the field range start and end
+     * to range[0] and range[1], so it is not limited by encodeIdx.
+     */
+    public void fieldsRange(ByteString separator,
+                            long start,
+                            long end,
+                            int fieldStart,
+                            int fieldEnd,
+                            long[] range) {
+        fields0(separator, start, end, fieldStart, fieldEnd, range);
+    }
+
+    /**
+     * Walks fields like iterateIdx, but in a plain loop, so mappers
+     * built on it allocate nothing. Stores the range unless it is null
+     * and returns it encoded.
+     */
+    private long fields0(ByteString separator,
                          long start,
                          long end,
                          int fieldStart,
                          int fieldEnd,
-                         long[] r) {
+                         long[] range) {
         if (fieldStart > fieldEnd) throw new IllegalArgumentException("fieldStart");
-        iterateIdx(separator, start, end, (s, e) -> {
-            if (r[0] == fieldStart) r[1] = s;
-            if (r[0] == fieldEnd) r[2] = e;
-            r[0]++;
-
-            return r[0] <= fieldStart ||
-                    (r[0] <= fieldEnd &&
-                            fieldEnd != Integer.MAX_VALUE);
-        });
+        long from = 0;
+        long to = end;
+        int n = 0;
+        long sepLen = separator.length();
+        long s = start;
+        while (s < end) {
+            long i = sepLen == 1
+                    ? indexOf(separator.byteAt(0), s, end)
+                    : indexOf(separator, s, end);
+            long e = i == -1 ? end : i;
+            if (s < e) {
+                if (n == fieldStart) from = s;
+                if (n == fieldEnd) to = e;
+                n++;
+                if (n > fieldStart && (n > fieldEnd || fieldEnd == Integer.MAX_VALUE)) {
+                    break;
+                }
+            }
+            if (i == -1) {
+                break;
+            }
+            s = i + sepLen;
+        }
+        if (range != null) {
+            range[0] = from;
+            range[1] = to;
+        }
+        return encodeIdx(from, to);
     }
 
     public ByteString fields(int fieldStart, int fieldEnd) {
@@ -507,6 +628,11 @@ public class ByteString implements Comparable<ByteString>, AutoCloseable {
         return idxStart(encoded) + idxLen(encoded);
     }
 
+    /**
+     * Packs a substring into one long: the start takes the upper 40 bits
+     * and the length the lower 24, so longer substrings are truncated.
+     * Use {@link Ranges} for records that may not fit.
+     */
     public static long encodeIdx(long start, long end) {
         long len = end - start;
         return (start << 24) | (len & ((1 << 24) - 1));
@@ -518,19 +644,20 @@ public class ByteString implements Comparable<ByteString>, AutoCloseable {
         }
         long ptr1 = idxStart(idx1);
         long ptr2 = idxStart(idx2);
+        return compareSubstrings(ptr1, ptr1 + idxLen(idx1), ptr2, ptr2 + idxLen(idx2));
+    }
 
-        long len1 = idxLen(idx1);
-        long len2 = idxLen(idx2);
+    public int compareSubstrings(long start1, long end1, long start2, long end2) {
+        long ptr1 = start1;
+        long ptr2 = start2;
 
-        for (int i = 0; i < len1 && i < len2; i++) {
-            byte b1 = byteAt(ptr1++);
-            byte b2 = byteAt(ptr2++);
+        long len1 = end1 - start1;
+        long len2 = end2 - start2;
 
-            if (b1 < b2) {
-                return -1;
-            } else if (b1 > b2) {
-                return 1;
-            }
+        long pos = buffer.position();
+        long i = mismatch(buffer, pos + ptr1, buffer, pos + ptr2, Math.min(len1, len2));
+        if (i != -1) {
+            return byteAt(ptr1 + i) < byteAt(ptr2 + i) ? -1 : 1;
         }
 
         if (len1 < len2) {
@@ -0,0 +1,27 @@
+package byte_lib.string;
+
+import byte_lib.buf.ByteBuf;
+
+/**
+ * One ByteString instance pointed at successive regions of a buffer,
+ * so iterating many regions allocates nothing. The string it returns
+ * is only valid until the next {@link #moveTo}; copyOf() it to keep it.
+ */
+public class ByteStringView {
+    private final ByteString str;
+
+    public ByteStringView(ByteBuf buf) {
+        str = ByteString.bb(buf.duplicate());
+    }
+
+    public ByteStringView(byte[] buf) {
+        str = ByteString.ba(buf);
+    }
+
+    /**
+     * Points the view at bytes [from, to) of the buffer.
+     */
+    public ByteString moveTo(long from, long to) {
+        return str.moveTo(from, to);
+    }
+}
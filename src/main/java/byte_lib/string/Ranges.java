@@ -0,0 +1,64 @@
+package byte_lib.string;
+
+import java.util.Arrays;
+
+/**
+ * Substrings of one ByteString kept as parallel start and end arrays.
+ * Unlike {@link ByteString#encodeIdx} it has no limit on offsets or
+ * record lengths, at the price of 16 bytes per record.
+ */
+public class Ranges {
+    private final ByteString str;
+    private long[] starts;
+    private long[] ends;
+    private int size;
+
+    public Ranges(ByteString str, int capacity) {
+        if (capacity < 0) throw new IllegalArgumentException("capacity");
+        this.str = str;
+        starts = new long[capacity];
+        ends = new long[capacity];
+    }
+
+    public void add(long start, long end) {
+        if (size == starts.length) {
+            int capacity = Math.max(8, size * 2);
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+        }
+        starts[size] = start;
+        ends[size] = end;
+        size++;
+    }
+
+    public ByteString string() {
+        return str;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long start(int i) {
+        return starts[i];
+    }
+
+    public long end(int i) {
+        return ends[i];
+    }
+
+    public long length(int i) {
+        return ends[i] - starts[i];
+    }
+
+    public ByteString substring(int i) {
+        return str.substring(starts[i], ends[i]);
+    }
+
+    public int compare(int i, int j) {
+        if (i == j) {
+            return 0;
+        }
+        return str.compareSubstrings(starts[i], ends[i], starts[j], ends[j]);
+    }
+}
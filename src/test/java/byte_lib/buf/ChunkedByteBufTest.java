@@ -0,0 +1,32 @@
+package byte_lib.buf;
+
+import org.junit.Test;
+
+import static byte_lib.buf.ChunkedByteBuf.MIN_CHUNK_BITS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ChunkedByteBufTest {
+    @Test
+    public void growsOverChunks() throws Exception {
+        ChunkedByteBuf buf = new ChunkedByteBuf(0);
+        byte[] data = new byte[(3 << MIN_CHUNK_BITS) + 123];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+
+        buf.put(data, 0, 100);
+        buf.put(data, 100, data.length - 100);
+        buf.flip();
+
+        assertThat(buf.limit()).isEqualTo(data.length);
+        assertThat(buf.capacity()).isEqualTo(4L << MIN_CHUNK_BITS);
+        for (int i = 0; i < data.length; i++) {
+            assertThat(buf.get(i)).isEqualTo(data[i]);
+        }
+
+        byte[] arr = new byte[data.length];
+        buf.duplicate().get(arr, 0, arr.length);
+        assertThat(arr).isEqualTo(data);
+        buf.free();
+    }
+}
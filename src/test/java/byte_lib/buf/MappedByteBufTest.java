@@ -0,0 +1,62 @@
+package byte_lib.buf;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+
+import static byte_lib.buf.MappedByteBuf.SEGMENT_SIZE;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MappedByteBufTest {
+    @Test
+    public void readsSmallFile() throws Exception {
+        File file = Files.createTempFile("tmp", ".txt").toFile();
+        file.deleteOnExit();
+        Files.write(file.toPath(), "abcde".getBytes());
+
+        MappedByteBuf buf = MappedByteBuf.map(file);
+        try {
+            assertThat(buf.limit()).isEqualTo(5);
+            assertThat(buf.get(0)).isEqualTo((byte) 'a');
+            assertThat(buf.get(4)).isEqualTo((byte) 'e');
+
+            byte[] arr = new byte[3];
+            buf.position(1);
+            buf.get(arr, 0, 3);
+            assertThat(new String(arr)).isEqualTo("bcd");
+        } finally {
+            buf.free();
+        }
+    }
+
+    @Test
+    public void stitchesSegments() throws Exception {
+        File file = Files.createTempFile("tmp", ".bin").toFile();
+        file.deleteOnExit();
+        long size = SEGMENT_SIZE + 16;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(size);
+        }
+
+        MappedByteBuf buf = MappedByteBuf.map(file, MapMode.READ_WRITE, size);
+        try {
+            buf.position(SEGMENT_SIZE - 2);
+            buf.put("abcd".getBytes(), 0, 4);
+
+            assertThat(buf.get(SEGMENT_SIZE - 1)).isEqualTo((byte) 'b');
+            assertThat(buf.get(SEGMENT_SIZE)).isEqualTo((byte) 'c');
+
+            byte[] arr = new byte[4];
+            ByteBuf dup = buf.duplicate();
+            dup.position(SEGMENT_SIZE - 2);
+            dup.get(arr, 0, 4);
+            assertThat(new String(arr)).isEqualTo("abcd");
+        } finally {
+            buf.free();
+            file.delete();
+        }
+    }
+}
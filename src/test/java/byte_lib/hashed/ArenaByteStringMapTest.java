@@ -0,0 +1,79 @@
+package byte_lib.hashed;
+
+import byte_lib.string.ByteString;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static byte_lib.string.ByteString.bs;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ArenaByteStringMapTest {
+    @Test
+    public void putGetRemove() throws Exception {
+        try (ArenaByteStringMap<Integer> map = new ArenaByteStringMap<>(4)) {
+            assertThat(map.put(bs("abc"), 5)).isNull();
+            assertThat(map.put(bs("abc"), 6)).isEqualTo(5);
+            assertThat(map.put(bs(""), 7)).isNull();
+            assertThat(map.get(bs("abc"))).isEqualTo(6);
+            assertThat(map.get(bs(""))).isEqualTo(7);
+            assertThat(map.get(bs("ab"))).isNull();
+            assertThat(map.arenaSize()).isEqualTo(3);
+
+            assertThat(map.remove(bs("abc"))).isEqualTo(6);
+            assertThat(map.containsKey(bs("abc"))).isFalse();
+            assertThat(map.size()).isEqualTo(1);
+            map.put(bs("abc"), 8);
+            assertThat(map.get(bs("abc"))).isEqualTo(8);
+            assertThat(map.arenaSize()).isEqualTo(3);
+        }
+    }
+
+    @Test
+    public void keysSpanChunks() throws Exception {
+        Random rnd = new Random(5);
+        Map<String, Integer> expected = new HashMap<>();
+        try (ArenaByteStringMap<Integer> map = new ArenaByteStringMap<>(10, ByteStringHash.xx(), 1000)) {
+            for (int i = 0; i < 20000; i++) {
+                String key = "<http://dbpedia.org/resource/R" + rnd.nextInt(5000) + ">";
+                ByteString str = bs("x" + key + "x").substring(1, key.length() + 1);
+                map.put(str, i);
+                expected.put(key, i);
+                if (i % 5 == 0) {
+                    key = "<http://dbpedia.org/resource/R" + rnd.nextInt(5000) + ">";
+                    map.remove(bs(key));
+                    expected.remove(key);
+                }
+            }
+            assertThat(map.arenaSize()).isGreaterThan(1000);
+
+            Map<String, Integer> actual = new HashMap<>();
+            map.forEach((key, value) -> actual.put(key.toString(), value));
+            assertThat(actual).isEqualTo(expected);
+            assertThat(map.size()).isEqualTo(expected.size());
+            for (Map.Entry<String, Integer> e : expected.entrySet()) {
+                assertThat(map.get(bs(e.getKey()))).isEqualTo(e.getValue());
+            }
+
+            map.clear();
+            assertThat(map.isEmpty()).isTrue();
+            assertThat(map.arenaSize()).isZero();
+        }
+    }
+
+    @Test
+    public void flyweightKeysCanBeCopied() throws Exception {
+        try (ArenaByteStringMap<Integer> map = new ArenaByteStringMap<>()) {
+            map.put(bs("a"), 1);
+            map.put(bs("bb"), 2);
+            Map<ByteString, Integer> copy = new HashMap<>();
+            map.forEach((key, value) -> {
+                key.hashCode();
+                copy.put(key.copyOf(), value);
+            });
+            assertThat(copy).containsEntry(bs("a"), 1).containsEntry(bs("bb"), 2);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package byte_lib.hashed;
+
+import org.junit.Test;
+
+import static byte_lib.hashed.ByteStringFilter.BloomMode.BLOCKED;
+import static byte_lib.string.ByteString.bs;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BlockedBloomByteStringFilterTest {
+    @Test
+    public void noFalseNegatives() throws Exception {
+        ByteStringFilter filter = ByteStringFilter.bloom(20, 8, BLOCKED);
+        assertThat(filter.isEmpty()).isTrue();
+        int added = 0;
+        for (int i = 0; i < 50000; i++) {
+            if (filter.add(bs("key" + i), bs("en"))) added++;
+        }
+        assertThat(added).isGreaterThan(49900);
+        assertThat(filter.add(bs("key1"), bs("en"))).isFalse();
+
+        int falsePositives = 0;
+        for (int i = 0; i < 100000; i++) {
+            boolean contains = filter.contains(bs("key" + i), bs("en"));
+            if (i < 50000) {
+                assertThat(contains).isTrue();
+            } else if (contains) {
+                falsePositives++;
+            }
+        }
+        assertThat(falsePositives).isLessThan(100);
+
+        filter.clear();
+        assertThat(filter.isEmpty()).isTrue();
+        assertThat(filter.contains(bs("key1"), bs("en"))).isFalse();
+    }
+
+    @Test
+    public void tinyFilterIsOneBlock() throws Exception {
+        ByteStringFilter filter = ByteStringFilter.bloom(3, 4, BLOCKED);
+        filter.add(bs("aaa"));
+        assertThat(filter.contains(bs("aaa"))).isTrue();
+    }
+}
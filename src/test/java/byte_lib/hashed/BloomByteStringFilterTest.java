@@ -37,4 +37,21 @@ public class BloomByteStringFilterTest {
         assertThat(filter.contains(bs("ggg"))).isFalse();
     }
 
-}
\ No newline at end of file
+    @Test
+    public void falsePositiveRate() throws Exception {
+        ByteStringFilter filter = ByteStringFilter.bloom(20, 7, ByteStringHash.xx());
+        for (int i = 0; i < 50000; i++) {
+            filter.add(bs("key" + i));
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 100000; i++) {
+            boolean contains = filter.contains(bs("key" + i));
+            if (i < 50000) {
+                assertThat(contains).isTrue();
+            } else if (contains) {
+                falsePositives++;
+            }
+        }
+        assertThat(falsePositives).isLessThan(100);
+    }
+}
@@ -0,0 +1,30 @@
+package byte_lib.hashed;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static byte_lib.string.ByteString.bs;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ByteStringIntMapTest {
+    @Test
+    public void counting() throws Exception {
+        ByteStringIntMap map = new ByteStringIntMap();
+        for (int i = 0; i < 10000; i++) {
+            map.increment(bs("key" + i % 100));
+        }
+        assertThat(map.size()).isEqualTo(100);
+        assertThat(map.getOrDefault(bs("key5"), 0)).isEqualTo(100);
+        assertThat(map.addTo(bs("key5"), -50)).isEqualTo(50);
+        assertThat(map.remove(bs("key6"))).isTrue();
+
+        Map<String, Integer> actual = new HashMap<>();
+        map.forEach((key, value) -> actual.put(key.toString(), value));
+        assertThat(actual).hasSize(99)
+                .containsEntry("key5", 50)
+                .containsEntry("key7", 100)
+                .doesNotContainKey("key6");
+    }
+}
@@ -0,0 +1,60 @@
+package byte_lib.hashed;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static byte_lib.string.ByteString.bs;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ByteStringLongMapTest {
+    @Test
+    public void putGetRemove() throws Exception {
+        ByteStringLongMap map = new ByteStringLongMap(4);
+        assertThat(map.isEmpty()).isTrue();
+        assertThat(map.put(bs("abc"), 5)).isEqualTo(0);
+        assertThat(map.put(bs("abc"), 6)).isEqualTo(5);
+        assertThat(map.getOrDefault(bs("abc"), -1)).isEqualTo(6);
+        assertThat(map.getOrDefault(bs("abd"), -1)).isEqualTo(-1);
+        assertThat(map.putIfAbsent(bs("abc"), 7)).isEqualTo(6);
+        assertThat(map.putIfAbsent(bs(""), 8)).isEqualTo(0);
+        assertThat(map.getOrDefault(bs(""), -1)).isEqualTo(8);
+        assertThat(map.size()).isEqualTo(2);
+
+        assertThat(map.remove(bs("abc"))).isTrue();
+        assertThat(map.remove(bs("abc"))).isFalse();
+        assertThat(map.containsKey(bs("abc"))).isFalse();
+        assertThat(map.remove(bs(""))).isTrue();
+        assertThat(map.isEmpty()).isTrue();
+    }
+
+    @Test
+    public void counting() throws Exception {
+        Random rnd = new Random(5);
+        ByteStringLongMap map = new ByteStringLongMap(10, ByteStringHash.xx());
+        Map<String, Long> expected = new HashMap<>();
+        for (int i = 0; i < 100000; i++) {
+            String key = "key" + rnd.nextInt(5000);
+            map.increment(bs(key));
+            expected.merge(key, 1L, Long::sum);
+            if (i % 7 == 0) {
+                key = "key" + rnd.nextInt(5000);
+                map.remove(bs(key));
+                expected.remove(key);
+            }
+        }
+        assertThat(map.addTo(bs("key1"), 10)).isEqualTo(expected.getOrDefault("key1", 0L) + 10);
+        expected.merge("key1", 10L, Long::sum);
+
+        Map<String, Long> actual = new HashMap<>();
+        map.forEach((key, value) -> actual.put(key.toString(), value));
+        assertThat(actual).isEqualTo(expected);
+        assertThat(map.size()).isEqualTo(expected.size());
+
+        map.clear();
+        assertThat(map.isEmpty()).isTrue();
+        assertThat(map.getOrDefault(bs("key1"), 0)).isEqualTo(0);
+    }
+}
@@ -4,6 +4,7 @@ import byte_lib.hashed.ByteStringMap;
 import byte_lib.string.ByteString;
 import org.junit.Test;
 
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Random;
 
@@ -85,4 +86,46 @@ public class ByteStringMapTest {
                     .isEqualTo(sameHashMod256[1][i].hashCode());
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    public void churnAgainstHashMap() throws Exception {
+        Random rnd = new Random(7);
+        ByteStringMap<Integer> map = new ByteStringMap<>();
+        Map<String, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 200000; i++) {
+            String key = "" + rnd.nextInt(3000);
+            if (rnd.nextBoolean()) {
+                assertThat(map.put(bs(key), i)).isEqualTo(expected.put(key, i));
+            } else {
+                assertThat(map.remove(bs(key))).isEqualTo(expected.remove(key));
+            }
+        }
+        assertThat(map.size()).isEqualTo(expected.size());
+        for (int i = 0; i < 3000; i++) {
+            assertThat(map.get(bs("" + i))).isEqualTo(expected.get("" + i));
+        }
+        Map<String, Integer> actual = new HashMap<>();
+        map.forEach((key, value) -> actual.put(key.toString(), value));
+        assertThat(actual).isEqualTo(expected);
+    }
+
+    @Test
+    public void degenerateHash() throws Exception {
+        ByteStringHash constant = new ByteStringHash.SimpleByteStringHash() {
+            @Override
+            public long hashCode(ByteString bs, long off, long len) {
+                return 42;
+            }
+        };
+        ByteStringMap<Integer> map = new ByteStringMap<>(10, constant);
+        for (int i = 0; i < 1000; i++) {
+            map.put(bs("" + i), i);
+        }
+        for (int i = 0; i < 1000; i += 2) {
+            map.remove(bs("" + i));
+        }
+        assertThat(map.size()).isEqualTo(500);
+        assertThat(map.get(bs("999"))).isEqualTo(999);
+        assertThat(map.get(bs("998"))).isNull();
+    }
+}
@@ -0,0 +1,61 @@
+package byte_lib.hashed;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static byte_lib.string.ByteString.bs;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ConcurrentBloomByteStringFilterTest {
+    @Test
+    public void sameBitsAsSingleThreadedFilter() throws Exception {
+        int nThreads = 8;
+        int perThread = 20000;
+        ByteStringFilter filter = ByteStringFilter.concurrentBloom(24, 7);
+        ByteStringFilter expected = ByteStringFilter.bloom(24, 7);
+        assertThat(filter.isEmpty()).isTrue();
+
+        ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+        int added = 0;
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int t = 0; t < nThreads; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    int n = 0;
+                    for (int i = 0; i < perThread; i++) {
+                        if (filter.add(bs("key" + (i * nThreads + thread)))) n++;
+                    }
+                    return n;
+                }));
+            }
+            for (Future<Integer> future : futures) {
+                added += future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        int total = nThreads * perThread;
+        int expectedAdded = 0;
+        for (int i = 0; i < total; i++) {
+            if (expected.add(bs("key" + i))) expectedAdded++;
+            assertThat(filter.contains(bs("key" + i))).isTrue();
+        }
+        assertThat(added).isBetween(expectedAdded - 100, total);
+        for (int i = total; i < 2 * total; i++) {
+            assertThat(filter.contains(bs("key" + i)))
+                    .isEqualTo(expected.contains(bs("key" + i)));
+        }
+
+        assertThat(filter.isEmpty()).isFalse();
+        filter.clear();
+        assertThat(filter.isEmpty()).isTrue();
+        assertThat(filter.contains(bs("key1"))).isFalse();
+    }
+}
@@ -0,0 +1,80 @@
+package byte_lib.hashed;
+
+import byte_lib.string.ByteString;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static byte_lib.string.ByteString.bs;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ConcurrentByteStringMapTest {
+    @Test
+    public void mapOperations() throws Exception {
+        ConcurrentByteStringMap<String> map = new ConcurrentByteStringMap<>();
+        assertThat(map.put(bs("a"), "1")).isNull();
+        assertThat(map.putIfAbsent(bs("a"), "2")).isEqualTo("1");
+        assertThat(map.replace(bs("a"), "2", "3")).isFalse();
+        assertThat(map.replace(bs("a"), "1", "3")).isTrue();
+        assertThat(map.get(bs("a"))).isEqualTo("3");
+        assertThat(map.replace(bs("b"), "1")).isNull();
+        assertThat(map.containsKey(bs("b"))).isFalse();
+
+        assertThat(map.remove(bs("a"), "1")).isFalse();
+        assertThat(map.remove(bs("a"), "3")).isTrue();
+        assertThat(map.isEmpty()).isTrue();
+        assertThat(map.putIfAbsent(bs("a"), "4")).isNull();
+        assertThat(map.merge(bs("a"), "5", String::concat)).isEqualTo("45");
+        assertThat(map.computeIfAbsent(bs("c"), k -> "6")).isEqualTo("6");
+
+        assertThat(map).hasSize(2)
+                .containsEntry(bs("a"), "45")
+                .containsEntry(bs("c"), "6");
+        map.clear();
+        assertThat(map).isEmpty();
+    }
+
+    @Test
+    public void concurrentWritesAndReads() throws Exception {
+        int nThreads = 8;
+        int perThread = 50000;
+        ConcurrentByteStringMap<Integer> map = new ConcurrentByteStringMap<>(16);
+        ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < nThreads; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        ByteString key = bs("key" + (i * nThreads + thread));
+                        map.put(key, i);
+                        assertThat(map.get(key)).isEqualTo(i);
+                        if (i % 3 == 0) {
+                            assertThat(map.remove(key)).isEqualTo(i);
+                        }
+                        map.merge(bs("shared" + (i % 100)), 1, Integer::sum);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        int removed = nThreads * ((perThread + 2) / 3);
+        assertThat(map.size()).isEqualTo(nThreads * perThread - removed + 100);
+        int shared = 0;
+        for (int i = 0; i < 100; i++) {
+            shared += map.get(bs("shared" + i));
+        }
+        assertThat(shared).isEqualTo(nThreads * perThread);
+        assertThat(map.get(bs("key" + nThreads))).isEqualTo(1);
+        assertThat(map.get(bs("key0"))).isNull();
+    }
+}
@@ -0,0 +1,46 @@
+package byte_lib.hashed;
+
+import org.junit.Test;
+
+import static byte_lib.string.ByteString.bs;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CountMinSketchTest {
+    @Test
+    public void estimates() throws Exception {
+        CountMinSketch sketch = new CountMinSketch(14, 4);
+        assertThat(sketch.isEmpty()).isTrue();
+        for (int i = 0; i < 100000; i++) {
+            sketch.add(bs("key" + (i % 10000)), bs("en"));
+        }
+        sketch.add(5000, bs("heavy"), bs("en"));
+        assertThat(sketch.totalCount()).isEqualTo(105000);
+
+        assertThat(sketch.estimate(bs("heavy"), bs("en"))).isBetween(5000L, 5050L);
+        long overestimated = 0;
+        for (int i = 0; i < 10000; i++) {
+            long estimate = sketch.estimate(bs("key" + i), bs("en"));
+            assertThat(estimate).isGreaterThanOrEqualTo(10);
+            overestimated += estimate - 10;
+        }
+        assertThat(overestimated).isLessThan(10000);
+        assertThat(sketch.estimate(bs("heavy"))).isLessThan(100);
+
+        sketch.clear();
+        assertThat(sketch.isEmpty()).isTrue();
+        assertThat(sketch.estimate(bs("heavy"), bs("en"))).isZero();
+    }
+
+    @Test
+    public void merge() throws Exception {
+        CountMinSketch a = CountMinSketch.withError(0.001, 0.01);
+        CountMinSketch b = CountMinSketch.withError(0.001, 0.01);
+        assertThat(a.width()).isEqualTo(4096);
+        assertThat(a.depth()).isEqualTo(5);
+        a.add(3, bs("key"));
+        b.add(4, bs("key"));
+        a.merge(b);
+        assertThat(a.estimate(bs("key"))).isEqualTo(7);
+        assertThat(a.totalCount()).isEqualTo(7);
+    }
+}
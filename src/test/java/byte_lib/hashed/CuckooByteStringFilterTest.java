@@ -0,0 +1,97 @@
+package byte_lib.hashed;
+
+import org.junit.Test;
+
+import static byte_lib.string.ByteString.bs;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class CuckooByteStringFilterTest {
+    @Test
+    public void addContainsRemove() throws Exception {
+        ByteStringFilter filter = ByteStringFilter.cuckoo(100000);
+        assertThat(filter.isEmpty()).isTrue();
+        boolean[] added = new boolean[90000];
+        int nAdded = 0;
+        for (int i = 0; i < added.length; i++) {
+            added[i] = filter.add(bs("key" + i), bs("en"));
+            if (added[i]) nAdded++;
+        }
+        assertThat(nAdded).isGreaterThan(89000);
+        assertThat(filter.add(bs("key1"), bs("en"))).isFalse();
+
+        int falsePositives = 0;
+        for (int i = 0; i < 190000; i++) {
+            boolean contains = filter.contains(bs("key" + i), bs("en"));
+            if (i < 90000) {
+                assertThat(contains).isTrue();
+            } else if (contains) {
+                falsePositives++;
+            }
+        }
+        assertThat(falsePositives).isLessThan(400);
+
+        for (int i = 0; i < 45000; i++) {
+            if (added[i]) {
+                assertThat(filter.remove(bs("key" + i), bs("en"))).isTrue();
+            }
+        }
+        int present = 0;
+        for (int i = 0; i < 45000; i++) {
+            if (filter.contains(bs("key" + i), bs("en"))) present++;
+        }
+        assertThat(present).isLessThan(100);
+        for (int i = 45000; i < 90000; i++) {
+            if (added[i]) {
+                assertThat(filter.contains(bs("key" + i), bs("en"))).isTrue();
+            }
+        }
+
+        filter.clear();
+        assertThat(filter.isEmpty()).isTrue();
+        assertThat(filter.contains(bs("key50000"), bs("en"))).isFalse();
+    }
+
+    @Test
+    public void slidingWindow() throws Exception {
+        ByteStringFilter filter = ByteStringFilter.cuckoo(1000);
+        boolean[] added = new boolean[100000];
+        for (int i = 0; i < added.length; i++) {
+            added[i] = filter.add(bs("key" + i));
+            if (i >= 900 && added[i - 900]) {
+                filter.remove(bs("key" + (i - 900)));
+            }
+        }
+        for (int i = added.length - 900; i < added.length; i++) {
+            if (added[i]) {
+                assertThat(filter.contains(bs("key" + i))).isTrue();
+            }
+        }
+    }
+
+    @Test
+    public void overfilled() throws Exception {
+        ByteStringFilter filter = ByteStringFilter.cuckoo(100);
+        assertThatThrownBy(() -> {
+            for (int i = 0; i < 1000; i++) {
+                filter.add(bs("key" + i));
+            }
+        }).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void fingerprintsAcrossWords() throws Exception {
+        ByteStringFilter filter = ByteStringFilter.cuckoo(1000, 13);
+        for (int i = 0; i < 900; i++) {
+            filter.add(bs("key" + i));
+        }
+        for (int i = 0; i < 900; i++) {
+            assertThat(filter.contains(bs("key" + i))).isTrue();
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void bloomCannotRemove() throws Exception {
+        ByteStringFilter.bloom(10, 3).remove(bs("key"));
+    }
+}
@@ -0,0 +1,50 @@
+package byte_lib.hashed;
+
+import byte_lib.string.ByteString;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static byte_lib.string.ByteString.bs;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FileIdxByteStringMultiMapTest {
+    @Test
+    public void buildsThenReopensIdx() throws Exception {
+        File file = Files.createTempFile("multimap", ".txt").toFile();
+        Files.write(file.toPath(), "abc def\nghi klm\nabc ddd\nghi ppp\nfff aaa\nabc aaa\n".getBytes());
+        File idxFile = new File(file.getPath() + ".idx");
+
+        for (int i = 0; i < 2; i++) {
+            try (FileIdxByteStringMultiMap map = new FileIdxByteStringMultiMap(file, bs("\n"),
+                    IdxMapper::firstField, IdxMapper::secondField)) {
+                assertThat(idxFile).isFile();
+                assertThat(map.size()).isEqualTo(6);
+                assertThat(map.get(bs("abc"))).containsExactly(bs("def"), bs("ddd"), bs("aaa"));
+                assertThat(map.get(bs("ghi"))).containsExactly(bs("klm"), bs("ppp"));
+                assertThat(map.get(bs("fff"))).containsExactly(bs("aaa"));
+                assertThat(map.get(bs("ggg"))).isEmpty();
+
+                List<ByteString> values = new ArrayList<>();
+                map.forEachValue(bs("abc"), value -> values.add(value.copyOf()));
+                assertThat(values).containsExactly(bs("def"), bs("ddd"), bs("aaa"));
+
+                values.clear();
+                map.forEachValue(bs("abc"), value -> {
+                    values.add(value.copyOf());
+                    return false;
+                });
+                assertThat(values).containsExactly(bs("def"));
+
+                map.forEachValue(bs("ggg"), value -> {
+                    throw new AssertionError();
+                });
+            }
+        }
+        idxFile.delete();
+        file.delete();
+    }
+}
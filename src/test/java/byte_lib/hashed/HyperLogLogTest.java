@@ -0,0 +1,44 @@
+package byte_lib.hashed;
+
+import org.junit.Test;
+
+import static byte_lib.string.ByteString.bs;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+public class HyperLogLogTest {
+    @Test
+    public void cardinality() throws Exception {
+        HyperLogLog hll = new HyperLogLog();
+        assertThat(hll.isEmpty()).isTrue();
+        assertThat(hll.cardinality()).isZero();
+        for (int i = 0; i < 1000000; i++) {
+            hll.add(bs("key" + (i % 300000)), bs("en"));
+        }
+        assertThat((double) hll.cardinality()).isCloseTo(300000, within(9000.0));
+
+        hll.clear();
+        assertThat(hll.isEmpty()).isTrue();
+    }
+
+    @Test
+    public void smallCardinality() throws Exception {
+        HyperLogLog hll = new HyperLogLog(10);
+        for (int i = 0; i < 100; i++) {
+            hll.add(bs("key" + i));
+        }
+        assertThat((double) hll.cardinality()).isCloseTo(100, within(5.0));
+    }
+
+    @Test
+    public void merge() throws Exception {
+        HyperLogLog a = new HyperLogLog();
+        HyperLogLog b = new HyperLogLog();
+        for (int i = 0; i < 50000; i++) {
+            a.add(bs("key" + i));
+            b.add(bs("key" + (i + 25000)));
+        }
+        a.merge(b);
+        assertThat((double) a.cardinality()).isCloseTo(75000, within(2250.0));
+    }
+}
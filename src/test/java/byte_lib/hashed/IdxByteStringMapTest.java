@@ -0,0 +1,145 @@
+package byte_lib.hashed;
+
+import byte_lib.string.ByteString;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOError;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+import static byte_lib.string.ByteString.ba;
+import static byte_lib.string.ByteString.bs;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class IdxByteStringMapTest {
+    @Test
+    public void testMapLastValueWins() throws Exception {
+        IdxByteStringMap map = new IdxByteStringMap(
+                bs("abc def;ghi klm;abc ddd"),
+                bs(";"),
+                IdxMapper::firstField,
+                IdxMapper::secondField);
+
+        assertThat(map.get(bs("abc"))).isEqualTo(bs("ddd"));
+        assertThat(map.get(bs("ghi"))).isEqualTo(bs("klm"));
+        assertThat(map.get(bs("ggg"))).isNull();
+        assertThat(map.size()).isEqualTo(2);
+    }
+
+    @Test
+    public void testRecordsLongerThanEncodedIdx() throws Exception {
+        assertLongValueKept(IdxMapper.field(0), IdxMapper.field(1));
+    }
+
+    @Test
+    public void testRecordsLongerThanEncodedIdxByMethodReference() throws Exception {
+        assertLongValueKept(IdxMapper::firstField, IdxMapper::secondField);
+    }
+
+    private static void assertLongValueKept(IdxMapper keyMapper, IdxMapper valueMapper) {
+        int valueLen = 20 * 1024 * 1024;
+        byte[] data = new byte[valueLen + 32];
+        Arrays.fill(data, (byte) 'x');
+        byte[] head = "k1 v1\nk2 ".getBytes();
+        System.arraycopy(head, 0, data, 0, head.length);
+        int end = head.length + valueLen;
+        byte[] tail = "\nk3 v3\n".getBytes();
+        System.arraycopy(tail, 0, data, end, tail.length);
+        ByteString chunk = ba(data, 0, end + tail.length);
+
+        IdxByteStringMap map = new IdxByteStringMap(chunk,
+                bs("\n"),
+                keyMapper,
+                valueMapper);
+
+        assertThat(map.get(bs("k1"))).isEqualTo(bs("v1"));
+        assertThat(map.get(bs("k2")).length()).isEqualTo(valueLen);
+        assertThat(map.get(bs("k3"))).isEqualTo(bs("v3"));
+    }
+
+    @Test
+    public void parallelBuildMatchesSequential() throws Exception {
+        Random rnd = new Random(11);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 50000; i++) {
+            sb.append("k").append(rnd.nextInt(20000)).append(' ').append("v").append(i).append('\n');
+            if (i % 1000 == 0) {
+                sb.append('\n');
+            }
+        }
+        ByteString chunk = bs(sb.toString());
+
+        IdxByteStringMap sequential = new IdxByteStringMap(chunk, bs("\n"),
+                IdxMapper.field(0), IdxMapper.field(1), ByteStringHash.simple());
+        for (int parallelism : new int[]{2, 3, 8}) {
+            IdxByteStringMap parallel = new IdxByteStringMap(chunk, bs("\n"),
+                    IdxMapper.field(0), IdxMapper.field(1), ByteStringHash.simple(), parallelism);
+            assertThat(parallel.size()).isEqualTo(sequential.size());
+            for (int i = 0; i < 21000; i++) {
+                ByteString key = bs("k" + i);
+                assertThat(parallel.get(key)).isEqualTo(sequential.get(key));
+            }
+        }
+    }
+
+    @Test
+    public void parallelBuildOfTinyChunk() throws Exception {
+        IdxByteStringMap map = new IdxByteStringMap(
+                bs("abc def;ghi klm;abc ddd"),
+                bs(";"),
+                IdxMapper::firstField,
+                IdxMapper::secondField,
+                ByteStringHash.xx(),
+                16);
+
+        assertThat(map.get(bs("abc"))).isEqualTo(bs("ddd"));
+        assertThat(map.get(bs("ghi"))).isEqualTo(bs("klm"));
+        assertThat(map.size()).isEqualTo(2);
+    }
+
+    @Test
+    public void writeAndOpenIdx() throws Exception {
+        ByteString chunk = bs("abc def;ghi klm;abc ddd;xyz uuu");
+        IdxByteStringMap map = new IdxByteStringMap(chunk, bs(";"),
+                IdxMapper::firstField, IdxMapper::secondField, ByteStringHash.xx(), 2);
+        File file = Files.createTempFile("idx", ".bin").toFile();
+        map.writeIdx(file);
+
+        try (IdxByteStringMap mapped = IdxByteStringMap.open(file, chunk,
+                IdxMapper::firstField, IdxMapper::secondField, ByteStringHash.xx())) {
+            assertThat(mapped.verify()).isTrue();
+            assertThat(mapped.size()).isEqualTo(3);
+            assertThat(mapped.get(bs("abc"))).isEqualTo(bs("ddd"));
+            assertThat(mapped.get(bs("ghi"))).isEqualTo(bs("klm"));
+            assertThat(mapped.get(bs("xyz"))).isEqualTo(bs("uuu"));
+            assertThat(mapped.get(bs("def"))).isNull();
+        }
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(file.length() - 1);
+            raf.write(0x7F);
+        }
+        try (IdxByteStringMap mapped = IdxByteStringMap.open(file, chunk,
+                IdxMapper::firstField, IdxMapper::secondField, ByteStringHash.xx())) {
+            assertThat(mapped.verify()).isFalse();
+        }
+
+        assertThatThrownBy(() -> IdxByteStringMap.open(file, bs("abc def"),
+                IdxMapper::firstField, IdxMapper::secondField, ByteStringHash.xx()))
+                .isInstanceOf(IOError.class);
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(24);
+            raf.writeInt(4);
+        }
+        assertThatThrownBy(() -> IdxByteStringMap.open(file, chunk,
+                IdxMapper::firstField, IdxMapper::secondField, ByteStringHash.xx()))
+                .isInstanceOf(IOError.class)
+                .hasMessageContaining("Corrupt index header");
+        file.delete();
+    }
+}
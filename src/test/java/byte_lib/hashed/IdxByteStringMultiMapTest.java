@@ -1,9 +1,19 @@
 package byte_lib.hashed;
 
+import byte_lib.string.ByteString;
+import byte_lib.string.SubstringIterator;
 import org.junit.Test;
 
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
 import static byte_lib.string.ByteString.bs;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assume.assumeTrue;
 
 public class IdxByteStringMultiMapTest {
     @Test
@@ -19,4 +29,106 @@ public class IdxByteStringMultiMapTest {
         assertThat(map.get(bs("fff"))).containsExactly(bs("aaa"));
         assertThat(map.get(bs("ggg"))).isEmpty();
     }
-}
\ No newline at end of file
+
+    @Test
+    public void parallelBuildKeepsValueOrder() throws Exception {
+        Random rnd = new Random(13);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 30000; i++) {
+            sb.append("k").append(rnd.nextInt(3000)).append(' ').append("v").append(i).append(';');
+        }
+        ByteString chunk = bs(sb.toString());
+
+        IdxByteStringMultiMap sequential = new IdxByteStringMultiMap(chunk, bs(";"),
+                IdxMapper::firstField, IdxMapper::secondField);
+        IdxByteStringMultiMap parallel = new IdxByteStringMultiMap(chunk, bs(";"),
+                IdxMapper::firstField, IdxMapper::secondField, ByteStringHash.simple(), 4);
+        assertThat(parallel.size()).isEqualTo(sequential.size());
+        for (int i = 0; i < 3100; i++) {
+            ByteString key = bs("k" + i);
+            assertThat(parallel.get(key)).isEqualTo(sequential.get(key));
+        }
+    }
+
+    @Test
+    public void writeAndOpenIdx() throws Exception {
+        ByteString chunk = bs("abc def;ghi klm;abc ddd;ghi ppp;fff aaa;abc aaa");
+        IdxByteStringMultiMap map = new IdxByteStringMultiMap(chunk, bs(";"),
+                IdxMapper::firstField, IdxMapper::secondField);
+        File file = Files.createTempFile("idx", ".bin").toFile();
+        map.writeIdx(file);
+
+        try (IdxByteStringMultiMap mapped = IdxByteStringMultiMap.open(file, chunk,
+                IdxMapper::firstField, IdxMapper::secondField, ByteStringHash.simple())) {
+            assertThat(mapped.verify()).isTrue();
+            assertThat(mapped.size()).isEqualTo(map.size());
+            assertThat(mapped.get(bs("abc"))).containsExactly(bs("def"), bs("ddd"), bs("aaa"));
+            assertThat(mapped.get(bs("ghi"))).containsExactly(bs("klm"), bs("ppp"));
+            assertThat(mapped.get(bs("fff"))).containsExactly(bs("aaa"));
+            assertThat(mapped.get(bs("ggg"))).isEmpty();
+        }
+        file.delete();
+    }
+
+    @Test
+    public void forEachValueYieldsChunkOffsets() throws Exception {
+        ByteString chunk = bs("abc def;ghi klm;abc ddd;ghi ppp;fff aaa;abc aaa");
+        IdxByteStringMultiMap map = new IdxByteStringMultiMap(chunk, bs(";"),
+                IdxMapper::firstField, IdxMapper::secondField);
+
+        List<ByteString> values = new ArrayList<>();
+        map.forEachValue(bs("abc"), (start, end) -> values.add(chunk.substring(start, end)));
+        assertThat(values).containsExactly(bs("def"), bs("ddd"), bs("aaa"));
+
+        values.clear();
+        map.forEachValue(bs("abc"), (start, end) -> {
+            values.add(chunk.substring(start, end));
+            return false;
+        });
+        assertThat(values).containsExactly(bs("def"));
+
+        map.forEachValue(bs("ggg"), (start, end) -> {
+            throw new AssertionError();
+        });
+    }
+
+    @Test
+    public void forEachValueAllocatesNothing() throws Exception {
+        java.lang.management.ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        assumeTrue(threadBean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) threadBean).isThreadAllocatedMemorySupported());
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) threadBean;
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            sb.append("k").append(i % 100).append(' ').append("v").append(i).append(';');
+        }
+        ByteString chunk = bs(sb.toString());
+        IdxByteStringMultiMap map = new IdxByteStringMultiMap(chunk, bs(";"),
+                IdxMapper::firstField, IdxMapper::secondField);
+        ByteString[] keys = new ByteString[100];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = bs("k" + i);
+        }
+        long[] sum = new long[1];
+        SubstringIterator it = (start, end) -> {
+            sum[0] += end - start;
+            return true;
+        };
+
+        long threadId = Thread.currentThread().getId();
+        for (ByteString key : keys) {
+            map.forEachValue(key, it);
+        }
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int j = 0; j < 100; j++) {
+            for (ByteString key : keys) {
+                map.forEachValue(key, it);
+            }
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertThat(sum[0]).isEqualTo(101 * 48890L);
+        assertThat(allocated).isLessThan(10000);
+    }
+}
@@ -0,0 +1,50 @@
+package byte_lib.hashed;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import static byte_lib.string.ByteString.bs;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class OffHeapBloomByteStringFilterTest {
+    @Test
+    public void sameBitsAsHeapFilter() throws Exception {
+        ByteStringFilter expected = ByteStringFilter.bloom(20, 7);
+        try (OffHeapBloomByteStringFilter filter = OffHeapBloomByteStringFilter.allocate(20, 7)) {
+            assertThat(filter.isEmpty()).isTrue();
+            for (int i = 0; i < 50000; i++) {
+                assertThat(filter.add(bs("key" + i))).isEqualTo(expected.add(bs("key" + i)));
+            }
+            for (int i = 0; i < 100000; i++) {
+                assertThat(filter.contains(bs("key" + i))).isEqualTo(expected.contains(bs("key" + i)));
+            }
+            filter.clear();
+            assertThat(filter.isEmpty()).isTrue();
+            assertThat(filter.contains(bs("key1"))).isFalse();
+        }
+    }
+
+    @Test
+    public void reopensMappedFile() throws Exception {
+        File file = Files.createTempFile("bloom", ".bin").toFile();
+        file.deleteOnExit();
+        try {
+            // 2^34 bits span several mapped segments
+            try (OffHeapBloomByteStringFilter filter = OffHeapBloomByteStringFilter.create(file, 34, 5)) {
+                assertThat(filter.isEmpty()).isTrue();
+                assertThat(filter.add(bs("subject"), bs("en"))).isTrue();
+                assertThat(filter.add(bs("subject"), bs("en"))).isFalse();
+            }
+
+            try (OffHeapBloomByteStringFilter filter = OffHeapBloomByteStringFilter.open(file)) {
+                assertThat(filter.isEmpty()).isFalse();
+                assertThat(filter.contains(bs("subject"), bs("en"))).isTrue();
+                assertThat(filter.contains(bs("subject"), bs("de"))).isFalse();
+            }
+        } finally {
+            file.delete();
+        }
+    }
+}
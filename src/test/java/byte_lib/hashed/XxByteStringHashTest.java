@@ -0,0 +1,41 @@
+package byte_lib.hashed;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static byte_lib.string.ByteString.bs;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class XxByteStringHashTest {
+    @Test
+    public void referenceValues() throws Exception {
+        ByteStringHash hash = ByteStringHash.xx();
+        assertThat(hash.hashCode(bs(""))).isEqualTo(0xEF46DB3751D8E999L);
+        assertThat(hash.hashCode(bs("a"))).isEqualTo(0xD24EC4F1A98C6E5BL);
+        assertThat(hash.hashCode(bs("abc"))).isEqualTo(0x44BC2CF5AD770999L);
+        assertThat(hash.hashCode(bs("Nobody inspects the spammish repetition")))
+                .isEqualTo(0xFBCEA83C8A378BF1L);
+    }
+
+    @Test
+    public void regionMatchesWholeString() throws Exception {
+        ByteStringHash hash = ByteStringHash.xx();
+        String text = "0123456789abcdefghijklmnopqrstuvwxyz0123456789ABCDEFGHIJ";
+        for (int len = 0; len < 50; len++) {
+            assertThat(hash.hashCode(bs(text), 3, len))
+                    .isEqualTo(hash.hashCode(bs(text.substring(3, 3 + len))));
+        }
+    }
+
+    @Test
+    public void seeds() throws Exception {
+        ByteStringHash hash = ByteStringHash.xx();
+        Set<Long> hashes = new HashSet<>();
+        for (int i = 0; i < 65536; i++) {
+            hashes.add(hash.n(i).hashCode(bs("test")));
+        }
+        assertThat(hashes).hasSize(65536);
+    }
+}
@@ -0,0 +1,92 @@
+package byte_lib.io;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ParallelBZip2InputStreamTest {
+    @Test
+    public void decompressesMultipleBlocksAndStreams() throws Exception {
+        byte[] data1 = randomText(1, 700 * 1024);
+        byte[] data2 = randomText(2, 300 * 1024);
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        compressed.write(compress(data1));
+        compressed.write(compress(data2));
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        expected.write(data1);
+        expected.write(data2);
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try (InputStream in = new ParallelBZip2InputStream(
+                new ByteArrayInputStream(compressed.toByteArray()), pool, 3)) {
+            assertThat(readAll(in)).isEqualTo(expected.toByteArray());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void decompressesEmptyStream() throws Exception {
+        try (InputStream in = new ParallelBZip2InputStream(
+                new ByteArrayInputStream(compress(new byte[0])))) {
+            assertThat(in.read()).isEqualTo(-1);
+        }
+    }
+
+    @Test
+    public void recoversFromEndOfStreamMagicInsideBlock() throws Exception {
+        byte[] data = randomText(3, 300 * 1024);
+        byte[] compressed = compress(data);
+
+        // any 48 bits from the middle of a block stand for a chance match
+        long chanceEos = 0;
+        for (int i = 0; i < 6; i++) {
+            chanceEos = (chanceEos << 8) | (compressed[compressed.length / 2 + i] & 0xFF);
+        }
+        chanceEos = (chanceEos >>> 3) | ((long) (compressed[compressed.length / 2 - 1] & 7) << 45);
+
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try (InputStream in = new ParallelBZip2InputStream(
+                new ByteArrayInputStream(compressed), pool, 2, chanceEos)) {
+            assertThat(readAll(in)).isEqualTo(data);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static byte[] compress(byte[] data) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (BZip2CompressorOutputStream bz = new BZip2CompressorOutputStream(out, 1)) {
+            bz.write(data);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] randomText(long seed, int size) {
+        Random rnd = new Random(seed);
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = rnd.nextInt(16) == 0 ? (byte) '\n' : (byte) ('a' + rnd.nextInt(26));
+        }
+        return data;
+    }
+
+    private static byte[] readAll(InputStream in) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[10000];
+        int n;
+        while ((n = in.read(buf)) != -1) {
+            out.write(buf, 0, n);
+        }
+        return out.toByteArray();
+    }
+}
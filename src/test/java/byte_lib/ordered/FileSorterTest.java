@@ -0,0 +1,88 @@
+package byte_lib.ordered;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+import static byte_lib.io.ByteFiles.readAll;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FileSorterTest {
+    @Test
+    public void externalSortMatchesInMemorySort() throws Exception {
+        File in = tempFile(".txt");
+        File expected = tempFile(".txt");
+        File actual = tempFile(".txt.snappy");
+        File actualPlain = tempFile(".txt");
+        File actualRadix = tempFile(".txt");
+
+        Random rnd = new Random(3);
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            int len = 1 + rnd.nextInt(40);
+            for (int j = 0; j < len; j++) {
+                builder.append((char) ('a' + rnd.nextInt(4)));
+            }
+            builder.append(i % 100 == 0 ? "\u00e9\n" : "\n");
+        }
+        Files.write(in.toPath(), builder.toString().getBytes("UTF-8"));
+
+        FileSorter.sortFile(in.getPath(), expected.getPath());
+        FileSorter.sortFile(in.getPath(), actualRadix.getPath(), SortEngine.PREFIX_RADIX);
+        FileSorter.external()
+                .withMemoryBudget(16 * 1024)
+                .withEngine(SortEngine.PREFIX_RADIX)
+                .withParallelism(3)
+                .withTempDir(in.getParentFile())
+                .sort(in.getPath(), actual.getPath());
+        FileSorter.external()
+                .sort(in.getPath(), actualPlain.getPath());
+
+        byte[] expectedBytes = Files.readAllBytes(expected.toPath());
+        assertThat(readAll(actual).toString())
+                .isEqualTo(new String(expectedBytes));
+        assertThat(Files.readAllBytes(actualPlain.toPath())).isEqualTo(expectedBytes);
+        assertThat(Files.readAllBytes(actualRadix.toPath())).isEqualTo(expectedBytes);
+    }
+
+    @Test
+    public void sortsLinesLongerThanEncodedIdx() throws Exception {
+        File in = tempFile(".txt");
+        File out = tempFile(".txt");
+        byte[] data = new byte[20 * 1024 * 1024];
+        Arrays.fill(data, (byte) 'b');
+        data[data.length - 1] = '\n';
+        try (OutputStream os = new FileOutputStream(in)) {
+            os.write(data);
+            os.write("c\nba\n".getBytes());
+        }
+
+        FileSorter.sortFile(in.getPath(), out.getPath(), SortEngine.PREFIX_RADIX);
+
+        byte[] sorted = Files.readAllBytes(out.toPath());
+        assertThat(sorted.length).isEqualTo(data.length + 5);
+        assertThat(new String(sorted, 0, 3)).isEqualTo("ba\n");
+        assertThat(new String(sorted, sorted.length - 2, 2)).isEqualTo("c\n");
+    }
+
+    @Test
+    public void sortsFileInPlace() throws Exception {
+        File file = tempFile(".txt");
+        Files.write(file.toPath(), "c\na\nb\n".getBytes());
+
+        FileSorter.sortFile(file.getPath(), file.getPath());
+
+        assertThat(new String(Files.readAllBytes(file.toPath()))).isEqualTo("a\nb\nc\n");
+    }
+
+    private static File tempFile(String suffix) throws Exception {
+        File file = Files.createTempFile("sort", suffix).toFile();
+        file.deleteOnExit();
+        return file;
+    }
+}
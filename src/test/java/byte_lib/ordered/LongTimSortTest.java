@@ -0,0 +1,38 @@
+package byte_lib.ordered;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LongTimSortTest {
+    @Test
+    public void parallelSortMatchesSequentialSort() throws Exception {
+        Random rnd = new Random(7);
+        long[] items = new long[200000];
+        for (int i = 0; i < items.length; i++) {
+            items[i] = ((long) rnd.nextInt(1000) << 32) | i;
+        }
+        long[] expected = items.clone();
+        LongComparator byHigh = (a, b) -> Long.compare(a >>> 32, b >>> 32);
+        LongTimSort.sort(expected, byHigh);
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            long[] actual = items.clone();
+            LongTimSort.parallelSort(actual, byHigh, pool);
+            assertThat(actual).isEqualTo(expected);
+        } finally {
+            pool.shutdown();
+        }
+
+        long[] sorted = items.clone();
+        Arrays.sort(sorted);
+        long[] actual = items.clone();
+        LongTimSort.parallelSort(actual, Long::compare);
+        assertThat(actual).isEqualTo(sorted);
+    }
+}
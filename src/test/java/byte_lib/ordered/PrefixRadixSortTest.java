@@ -0,0 +1,51 @@
+package byte_lib.ordered;
+
+import byte_lib.string.ByteString;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static byte_lib.string.ByteString.NEW_LINE;
+import static byte_lib.string.ByteString.bs;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PrefixRadixSortTest {
+    @Test
+    public void sortsLikeCompareByIdx() throws Exception {
+        Random rnd = new Random(11);
+        byte[] alphabet = {'a', 'b', 0, 1, (byte) 0x7F, (byte) 0x80, (byte) 0xC3, (byte) 0xFF};
+        byte[] data = new byte[2_000_000];
+        int len = 0;
+        while (len < data.length - 64) {
+            int lineLen = rnd.nextInt(20);
+            boolean common = rnd.nextBoolean();
+            for (int i = 0; i < lineLen; i++) {
+                data[len++] = common && i < 9 ? (byte) 'x' : alphabet[rnd.nextInt(alphabet.length)];
+            }
+            data[len++] = '\n';
+        }
+        ByteString content = ByteString.ba(data, 0, len);
+
+        long[] expected = content.splitIdx(NEW_LINE);
+        LongTimSort.sort(expected, content::compareByIdx);
+        long[] actual = content.splitIdx(NEW_LINE);
+        PrefixRadixSort.sort(content, actual);
+
+        assertThat(actual.length).isEqualTo(expected.length);
+        for (int i = 0; i < actual.length; i++) {
+            assertThat(content.compareByIdx(actual[i], expected[i])).isZero();
+        }
+    }
+
+    @Test
+    public void shortLines() {
+        ByteString content = bs("b\nab\na\nabcdefghi\nabcdefgh\n");
+        long[] items = content.splitIdx(NEW_LINE);
+        PrefixRadixSort.sort(content, items);
+        StringBuilder sorted = new StringBuilder();
+        for (long item : items) {
+            sorted.append(content.substringIdx(item)).append(',');
+        }
+        assertThat(sorted.toString()).isEqualTo("a,ab,abcdefgh,abcdefghi,b,");
+    }
+}
@@ -11,6 +11,7 @@ import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Arrays;
 
 import static byte_lib.string.ByteString.*;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -343,6 +344,44 @@ public class ByteStringTest {
         assertThat(val.indexOf(bs("cdd"), 0, 3)).isEqualTo(-1);
     }
 
+    @Test
+    public void indexOfCharWordWise() throws Exception {
+        ByteString val = bs("0123456789abcdefghij,klmnop,");
+        ByteBuf big = new BigByteBuf(val.length());
+        big.put(val.toString().getBytes(), 0, (int) val.length()).flip();
+
+        for (ByteString str : new ByteString[] { val, bb(big) }) {
+            for (int i = 0; i < str.length(); i++) {
+                assertThat(str.indexOf(str.byteAt(i), i, str.length())).isEqualTo(i);
+            }
+            assertThat(str.indexOf((byte) ',', 21, 27)).isEqualTo(-1);
+            assertThat(str.indexOf((byte) ',')).isEqualTo(20);
+            assertThat(str.substring(3).indexOf((byte) ',')).isEqualTo(17);
+        }
+    }
+
+    @Test
+    public void indexOfString() throws Exception {
+        ByteString val = bs("abcabdabcabe");
+
+        assertThat(val.indexOf(bs("abe"), 0, val.length())).isEqualTo(9);
+        assertThat(val.indexOf(bs("abd"), 4, val.length())).isEqualTo(-1);
+    }
+
+    @Test
+    public void splitLong() throws Exception {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            builder.append(i).append(i % 7 == 0 ? "\n\n" : "\n");
+        }
+        ByteString[] lines = bs(builder.toString()).split(NEW_LINE);
+
+        assertThat(lines).hasSize(1000);
+        for (int i = 0; i < 1000; i++) {
+            assertThat(lines[i]).isEqualTo(bs("" + i));
+        }
+    }
+
     @Test
     public void substring() throws Exception {
         byte []arr = new byte[] {'a','c','c','d','c'};
@@ -387,6 +426,35 @@ public class ByteStringTest {
         assertThat(bs("a").compareTo(bs("ab"))).isEqualTo(-1);
     }
 
+    @Test
+    public void compareToWordWise() throws Exception {
+        assertThat(bs("0123456789abcdefX").compareTo(bs("0123456789abcdefY"))).isEqualTo(-1);
+        assertThat(bs("0123456789aXcdef").compareTo(bs("0123456789aYcdef"))).isEqualTo(-1);
+        assertThat(bs("0123456789ab").compareTo(bs("0123456789a"))).isEqualTo(1);
+        assertThat(bs("0123456789ab").compareTo(bs("0123456789ab"))).isEqualTo(0);
+        assertThat(ba(new byte[] {'a','b','c','d','e','f','g','h',(byte) 0x80})
+                .compareTo(bs("abcdefghz"))).isEqualTo(-1);
+    }
+
+    @Test
+    public void compareByIdx() throws Exception {
+        ByteString str = bs("0123456789abcdefX\n0123456789abcdefY\n0123456789abcdef\n");
+        long[] idx = str.splitIdx(NEW_LINE);
+
+        assertThat(str.compareByIdx(idx[0], idx[1])).isEqualTo(-1);
+        assertThat(str.compareByIdx(idx[1], idx[0])).isEqualTo(1);
+        assertThat(str.compareByIdx(idx[2], idx[0])).isEqualTo(-1);
+        assertThat(str.compareByIdx(idx[0], encodeIdx(0, 17))).isEqualTo(0);
+    }
+
+    @Test
+    public void equalsWordWise() throws Exception {
+        assertThat(bs("0123456789abcdefghi")).isEqualTo(bs("x0123456789abcdefghi").substring(1));
+        assertThat(bs("0123456789abcdefghi")).isNotEqualTo(bs("0123456789abcdefghj"));
+        assertThat(bs("0123456789abcdefghi").startsWith(bs("0123456789ab"))).isTrue();
+        assertThat(bs("0123456789abcdefghi").startsWith(bs("0123456789aB"))).isFalse();
+    }
+
     @Test
     public void fields() throws Exception {
         assertThat(bs("aa bb cc").firstField()).isEqualTo(bs("aa"));
@@ -405,6 +473,28 @@ public class ByteStringTest {
         assertThat(str).isEqualTo(bs("abc\ndef\n"));
     }
 
+    @Test
+    public void loadArchived() throws Exception {
+        for (String ext : new String[] {".gz", ".bz2", ".snappy"}) {
+            Path tempFile = Files.createTempFile("tmp", ".txt" + ext);
+            tempFile.toFile().deleteOnExit();
+            ByteFiles.writeAll(tempFile.toFile(), bs("abc\ndef\n"));
+            ByteString str = ByteFiles.readAll(tempFile.toFile());
+            assertThat(str).describedAs(ext).isEqualTo(bs("abc\ndef\n"));
+        }
+    }
+
+    @Test
+    public void map() throws Exception {
+        Path tempFile = Files.createTempFile("tmp", ".txt");
+        tempFile.toFile().deleteOnExit();
+        Files.write(tempFile, "abc\ndef\n".getBytes());
+        try (ByteString str = ByteFiles.map(tempFile.toFile())) {
+            assertThat(str).isEqualTo(bs("abc\ndef\n"));
+            assertThat(str.split(NEW_LINE)).containsExactly(bs("abc"), bs("def"));
+        }
+    }
+
     @Test
     public void cut() throws Exception {
         ByteString val = bs("abcde");
@@ -415,4 +505,47 @@ public class ByteStringTest {
         assertThat(val.byteAt(0)).isEqualTo((byte) 'c');
     }
 
-}
\ No newline at end of file
+
+    @Test
+    public void splitRanges() {
+        byte[] data = new byte[(1 << 24) + 10];
+        Arrays.fill(data, (byte) 'a');
+        data[3] = '\n';
+        data[data.length - 2] = '\n';
+        Ranges ranges = ba(data).splitRanges(NEW_LINE);
+
+        assertThat(ranges.size()).isEqualTo(3);
+        assertThat(ranges.substring(0)).isEqualTo(bs("aaa"));
+        assertThat(ranges.length(1)).isEqualTo(data.length - 6);
+        assertThat(ranges.substring(2)).isEqualTo(bs("a"));
+        assertThat(ranges.compare(0, 1)).isNegative();
+        assertThat(ranges.compare(2, 0)).isNegative();
+    }
+
+    @Test
+    public void cachedHashCode() {
+        ByteString str = bs("cached hash code");
+        assertThat(str.hashCode()).isEqualTo(str.hashCode());
+        assertThat(str.hashCode()).isEqualTo(bs("cached hash code").hashCode());
+        assertThat(str.copyOf().longHashCode()).isEqualTo(str.longHashCode());
+        assertThat(bs("xcached hash code").substring(1).longHashCode())
+                .isEqualTo(str.longHashCode());
+        assertThat(EMPTY.hashCode()).isEqualTo(31);
+    }
+
+    @Test
+    public void moveToAndWriteToBuf() {
+        ByteBuf buf = new BigByteBuf(16);
+        bs("abc").writeTo(buf);
+        bs("defg").writeTo(buf);
+        assertThat(buf.position()).isEqualTo(7);
+
+        ByteStringView view = new ByteStringView(buf);
+        assertThat(view.moveTo(0, 3)).isEqualTo(bs("abc"));
+        long abcHash = view.moveTo(0, 3).longHashCode();
+        assertThat(view.moveTo(3, 7)).isEqualTo(bs("defg"));
+        assertThat(view.moveTo(3, 7).longHashCode())
+                .isNotEqualTo(abcHash)
+                .isEqualTo(bs("defg").longHashCode());
+    }
+}